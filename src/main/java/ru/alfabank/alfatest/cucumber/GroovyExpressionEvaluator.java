@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.alfatest.cucumber;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyShell;
+
+import java.math.BigDecimal;
+import java.util.function.Function;
+
+/**
+ * Выполнение java/groovy-выражений для хранилища переменных.
+ * Вынесено в отдельный класс, чтобы классы Groovy загружались только при первом выполнении выражения
+ */
+final class GroovyExpressionEvaluator {
+
+    private GroovyExpressionEvaluator() {
+
+    }
+
+    /**
+     * Компилирует и выполняет выражение, значения переменных запрашиваются только при обращении к ним.
+     * Числовые значения передаются в выражение как BigDecimal
+     *
+     * @param expression     java/groovy-код, который будет выполнен
+     * @param variableLookup функция получения значения переменной по имени, возвращает null для неизвестных имен
+     */
+    static Object evaluate(String expression, Function<String, Object> variableLookup) {
+        GroovyShell shell = new GroovyShell(new Binding() {
+            @Override
+            public Object getVariable(String name) {
+                Object value = getVariables().containsKey(name) ? null : variableLookup.apply(name);
+                if (value == null) {
+                    return super.getVariable(name);
+                }
+                try {
+                    return new BigDecimal(value.toString());
+                } catch (NumberFormatException exp) {
+                    return value;
+                }
+            }
+
+            @Override
+            public boolean hasVariable(String name) {
+                return super.hasVariable(name) || variableLookup.apply(name) != null;
+            }
+        });
+        return shell.evaluate(expression);
+    }
+}
@@ -13,45 +13,72 @@
 package ru.alfabank.alfatest.cucumber;
 
 import com.google.common.collect.Maps;
-import groovy.lang.GroovyShell;
 import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
+import ru.alfabank.tests.core.helpers.StartupProfiler;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static com.google.gson.JsonParser.parseString;
 import static ru.alfabank.tests.core.helpers.PropertyLoader.loadProperty;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadPropertyInt;
 
 /**
- * Реализация хранилища переменных, заданных пользователем, внутри тестовых сценариев
+ * Реализация хранилища переменных, заданных пользователем, внутри тестовых сценариев.
+ * Переменные разделены на области видимости (см. VariableScope): переменные сценария,
+ * переменные feature-файла и глобальные переменные прогона.
+ * Поиск переменной выполняется последовательно: сценарий, feature, глобальная область.
+ * Глобальная область и области feature-файлов хранятся как неизменяемые снимки,
+ * которые заменяются целиком при записи (copy-on-write), поэтому читаются параллельными сценариями без блокировок.
+ * Строковые переменные сценария длиннее variablesSpillThreshold символов хранятся во временных файлах
+ * в директории variablesSpillDir, читаются только при обращении к переменной и удаляются при очистке хранилища
  */
 public class ScopedVariables {
 
     public static final String VARIABLE_NAME_PATTERN = "[{]([\\wа-яА-Я]+[\\wа-яА-Я.-]+[\\wа-яА-Я]+)[}]";
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile(VARIABLE_NAME_PATTERN);
+
+    private static final int SPILL_THRESHOLD = loadPropertyInt("variablesSpillThreshold", 1024 * 1024);
+    private static final String SPILL_DIR = loadProperty("variablesSpillDir", System.getProperty("java.io.tmpdir"));
+
+    private static final AtomicReference<Map<String, Object>> GLOBAL_VARIABLES =
+            new AtomicReference<>(Collections.emptyMap());
+    private static final Map<String, AtomicReference<Map<String, Object>>> FEATURE_VARIABLES = new ConcurrentHashMap<>();
 
     private final Map<String, Object> variables = Maps.newHashMap();
+    private final AtomicReference<Map<String, Object>> featureVariables;
+
+    public ScopedVariables() {
+        this.featureVariables = new AtomicReference<>(Collections.emptyMap());
+    }
+
+    /**
+     * @param featureUri uri feature-файла, переменные которого будут доступны в хранилище
+     */
+    public ScopedVariables(String featureUri) {
+        this.featureVariables = featureUri == null
+                ? new AtomicReference<>(Collections.emptyMap())
+                : FEATURE_VARIABLES.computeIfAbsent(featureUri, uri -> new AtomicReference<>(Collections.emptyMap()));
+    }
 
     /**
      * Компилирует и выполняет в рантайме переданный на вход java/groovy-код.
-     * Предварительно загружает в память все переменные,
-     * т.е. на вход в строковом аргументе могут быть переданы переменные из "variables"
+     * В коде доступны все переменные из "variables",
+     * т.е. на вход в строковом аргументе могут быть переданы переменные из "variables".
+     * Значение переменной читается только при обращении к ней из выполняемого кода
      *
      * @param expression java/groovy-код, который будет выполнен
      */
     public Object evaluate(String expression) {
-        GroovyShell shell = new GroovyShell();
-        variables.forEach((key, value) -> {
-            try {
-                shell.setVariable(key, new BigDecimal(value.toString()));
-            } catch (NumberFormatException exp) {
-                shell.setVariable(key, value);
-            }
-        });
-        return shell.evaluate(expression);
+        return StartupProfiler.measure("Groovy: первое выполнение выражения",
+                () -> GroovyExpressionEvaluator.evaluate(expression, this::get));
     }
 
     /**
@@ -60,8 +87,7 @@ public class ScopedVariables {
      * @param textToReplaceIn строка, в которой необходимо выполнить замену (не модифицируется)
      */
     public String replaceVariables(String textToReplaceIn) {
-        Pattern p = Pattern.compile(VARIABLE_NAME_PATTERN);
-        Matcher m = p.matcher(textToReplaceIn);
+        Matcher m = VARIABLE_PATTERN.matcher(textToReplaceIn);
         StringBuffer buffer = new StringBuffer();
         while (m.find()) {
             String varName = m.group(1);
@@ -80,8 +106,7 @@ public class ScopedVariables {
      * @return новая строка
      */
     public static String resolveVars(String inputString) {
-        Pattern p = Pattern.compile(VARIABLE_NAME_PATTERN);
-        Matcher m = p.matcher(inputString);
+        Matcher m = VARIABLE_PATTERN.matcher(inputString);
         String newString = "";
         List<String> unresolvedVariables = new ArrayList<>();
         while (m.find()) {
@@ -92,7 +117,7 @@ public class ScopedVariables {
                 value = varName;
             }
             newString = m.replaceFirst(value);
-            m = p.matcher(newString);
+            m = VARIABLE_PATTERN.matcher(newString);
         }
         if (!unresolvedVariables.isEmpty()) {
             throw new IllegalArgumentException(
@@ -121,19 +146,114 @@ public class ScopedVariables {
     }
 
     public void put(String name, Object value) {
-        variables.put(name, value);
+        if (value instanceof String && SPILL_THRESHOLD > 0 && ((String) value).length() > SPILL_THRESHOLD) {
+            value = SpilledValue.spill((String) value, SPILL_DIR);
+        }
+        release(variables.put(name, value));
+    }
+
+    /**
+     * Сохраняет переменную в заданную область видимости.
+     * Запись в глобальную область и область feature-файла создает новый снимок переменных,
+     * уже полученные другими потоками значения не изменяются
+     *
+     * @param name  имя переменной
+     * @param value значение переменной
+     * @param scope область видимости
+     */
+    public void put(String name, Object value, VariableScope scope) {
+        switch (scope) {
+            case GLOBAL:
+                putToSnapshot(GLOBAL_VARIABLES, name, value);
+                break;
+            case FEATURE:
+                putToSnapshot(featureVariables, name, value);
+                break;
+            default:
+                put(name, value);
+        }
     }
 
     public Object get(String name) {
-        return variables.get(name);
+        Object value = materialize(variables.get(name));
+        if (value == null) {
+            value = featureVariables.get().get(name);
+        }
+        if (value == null) {
+            value = GLOBAL_VARIABLES.get().get(name);
+        }
+        return value;
     }
 
+    /**
+     * Возвращает значение переменной только из заданной области видимости
+     *
+     * @param name  имя переменной
+     * @param scope область видимости
+     */
+    public Object get(String name, VariableScope scope) {
+        switch (scope) {
+            case GLOBAL:
+                return GLOBAL_VARIABLES.get().get(name);
+            case FEATURE:
+                return featureVariables.get().get(name);
+            default:
+                return materialize(variables.get(name));
+        }
+    }
+
+    /**
+     * Возвращает все видимые в сценарии переменные.
+     * При совпадении имен переменные сценария перекрывают переменные feature-файла, а те - глобальные.
+     * Значения, хранящиеся во временных файлах, читаются в память
+     */
+    public Map<String, Object> getAll() {
+        Map<String, Object> all = new HashMap<>(GLOBAL_VARIABLES.get());
+        all.putAll(featureVariables.get());
+        variables.forEach((key, value) -> all.put(key, materialize(value)));
+        return all;
+    }
+
+    /**
+     * Очищает переменные сценария и удаляет их временные файлы,
+     * глобальные переменные и переменные feature-файла не изменяются
+     */
     public void clear() {
+        variables.values().forEach(ScopedVariables::release);
         variables.clear();
     }
 
+    /**
+     * Очищает глобальные переменные и переменные всех feature-файлов
+     */
+    public static void clearSharedScopes() {
+        GLOBAL_VARIABLES.set(Collections.emptyMap());
+        FEATURE_VARIABLES.clear();
+    }
+
+    private static void putToSnapshot(AtomicReference<Map<String, Object>> snapshot, String name, Object value) {
+        snapshot.updateAndGet(current -> {
+            Map<String, Object> updated = new HashMap<>(current);
+            updated.put(name, value);
+            return Collections.unmodifiableMap(updated);
+        });
+    }
+
     public Object remove(String key) {
-        return variables.remove(key);
+        Object value = variables.remove(key);
+        Object materialized = materialize(value);
+        release(value);
+        return materialized;
+    }
+
+    private static Object materialize(Object value) {
+        return value instanceof SpilledValue ? ((SpilledValue) value).materialize() : value;
+    }
+
+    private static void release(Object value) {
+        if (value instanceof SpilledValue) {
+            ((SpilledValue) value).release();
+        }
     }
 
 }
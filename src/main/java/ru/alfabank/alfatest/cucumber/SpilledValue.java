@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.alfatest.cucumber;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Значение переменной, вынесенное из heap во временный файл.
+ * Содержимое читается из файла при каждом обращении к переменной и не удерживается в памяти.
+ * Файл удаляется вызовом release() в конце сценария. Файлы, оставшиеся к завершению JVM, удаляются вместе
+ * с поддиректорией, которую каждая JVM создает внутри spillDir
+ */
+@Slf4j
+final class SpilledValue {
+
+    private static final Map<String, Path> SESSION_DIRS = new ConcurrentHashMap<>();
+
+    private final Path file;
+
+    private SpilledValue(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Записывает строку во временный файл в директории spillDir
+     *
+     * @param value    значение переменной
+     * @param spillDir директория для временных файлов
+     */
+    @SneakyThrows(IOException.class)
+    static SpilledValue spill(String value, String spillDir) {
+        Path file = Files.createTempFile(getSessionDir(spillDir), "akita-var-", ".tmp");
+        Files.write(file, value.getBytes(StandardCharsets.UTF_8));
+        return new SpilledValue(file);
+    }
+
+    /**
+     * Возвращает поддиректорию этой JVM в spillDir, при первом обращении создает ее
+     * и регистрирует удаление поддиректории при завершении JVM
+     */
+    private static Path getSessionDir(String spillDir) {
+        return SESSION_DIRS.computeIfAbsent(spillDir, dir -> {
+            try {
+                Path sessionDir = Files.createTempDirectory(Files.createDirectories(Paths.get(dir)), "akita-vars-");
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteSessionDir(sessionDir), "akita-spill-cleanup"));
+                return sessionDir;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void deleteSessionDir(Path sessionDir) {
+        try (Stream<Path> files = Files.list(sessionDir)) {
+            files.forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временные файлы переменных в " + sessionDir + ": " + e.getMessage());
+        }
+        sessionDir.toFile().delete();
+    }
+
+    /**
+     * Возвращает значение переменной, читая его из временного файла
+     */
+    @SneakyThrows(IOException.class)
+    String materialize() {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Удаляет временный файл
+     */
+    void release() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временный файл переменной " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return materialize();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.alfatest.cucumber;
+
+/**
+ * Области видимости переменных в хранилище ScopedVariables.
+ * Поиск переменной выполняется от SCENARIO к GLOBAL
+ */
+public enum VariableScope {
+    /**
+     * Переменные, доступные всем сценариям прогона
+     */
+    GLOBAL,
+    /**
+     * Переменные, доступные всем сценариям одного feature-файла
+     */
+    FEATURE,
+    /**
+     * Переменные текущего сценария
+     */
+    SCENARIO
+}
@@ -16,9 +16,20 @@ import cucumber.api.Scenario;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import ru.alfabank.alfatest.cucumber.ScopedVariables;
+import ru.alfabank.alfatest.cucumber.VariableScope;
 import ru.alfabank.alfatest.cucumber.annotations.Name;
+import ru.alfabank.tests.core.helpers.AttachmentStore;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import static ru.alfabank.tests.core.helpers.PropertyLoader.addChangeListener;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadProperty;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadPropertyInt;
 
 /**
  * Класс, связанный с AkitaScenario, используется для хранения страниц и переменных внутри сценария
@@ -26,6 +37,24 @@ import java.util.Arrays;
 @Slf4j
 public class AkitaEnvironment {
 
+    /**
+     * Уровень детализации записей в отчет
+     */
+    private static volatile LogLevel REPORT_LOG_LEVEL;
+    /**
+     * Максимальная длина одной записи в отчете, записи длиннее обрезаются (0 - без ограничений)
+     */
+    private static volatile int REPORT_ENTRY_MAX_LENGTH;
+    /**
+     * Максимальный размер вложения в байтах, встраиваемого в отчет, вложения большего размера сохраняются в файлы
+     */
+    private static volatile int ATTACHMENT_INLINE_MAX_SIZE;
+
+    static {
+        loadReportSettings();
+        addChangeListener(properties -> loadReportSettings());
+    }
+
     /**
      * Сценарий (Cucumber.api), с которым связана среда
      */
@@ -85,7 +114,71 @@ public class AkitaEnvironment {
      * Выводит дополнительный информационный текст в отчет (уровень логирования INFO)
      */
     public void write(Object object) {
-        scenario.write(String.valueOf(object));
+        write(LogLevel.INFO, () -> String.valueOf(object));
+    }
+
+    /**
+     * Выводит дополнительный информационный текст в отчет, если уровень записи включен.
+     * Текст формируется только для выводимых записей и обрезается до reportEntryMaxLength символов
+     *
+     * @param level   уровень записи
+     * @param message поставщик текста записи
+     */
+    public void write(LogLevel level, Supplier<String> message) {
+        if (isLoggable(level)) {
+            scenario.write(truncate(message.get()));
+        }
+    }
+
+    /**
+     * Прикрепляет вложение к отчету.
+     * Вложения больше attachmentInlineMaxSize байт сохраняются в AttachmentStore,
+     * а в отчет выводится только путь к файлу
+     *
+     * @param data     содержимое вложения
+     * @param mimeType тип вложения
+     */
+    public void embed(byte[] data, String mimeType) {
+        if (data.length <= ATTACHMENT_INLINE_MAX_SIZE) {
+            scenario.embed(data, mimeType);
+        } else {
+            writeAttachmentReference(AttachmentStore.store(data, mimeType), mimeType);
+        }
+    }
+
+    /**
+     * Прикрепляет файл к отчету.
+     * Файлы больше attachmentInlineMaxSize байт копируются в AttachmentStore потоком, без чтения в память
+     *
+     * @param file     файл вложения
+     * @param mimeType тип вложения
+     */
+    @SneakyThrows
+    public void embed(File file, String mimeType) {
+        if (file.length() <= ATTACHMENT_INLINE_MAX_SIZE) {
+            scenario.embed(Files.readAllBytes(file.toPath()), mimeType);
+        } else {
+            writeAttachmentReference(AttachmentStore.store(file, mimeType), mimeType);
+        }
+    }
+
+    private void writeAttachmentReference(Path attachment, String mimeType) {
+        scenario.write("Вложение " + mimeType + " сохранено в файл: " + attachment.toAbsolutePath());
+    }
+
+    /**
+     * Проверяет, выводятся ли в отчет записи заданного уровня
+     */
+    public static boolean isLoggable(LogLevel level) {
+        return REPORT_LOG_LEVEL.includes(level);
+    }
+
+    private static String truncate(String message) {
+        if (REPORT_ENTRY_MAX_LENGTH <= 0 || message == null || message.length() <= REPORT_ENTRY_MAX_LENGTH) {
+            return message;
+        }
+        return message.substring(0, REPORT_ENTRY_MAX_LENGTH)
+                + "... [обрезано, полная длина " + message.length() + " символов]";
     }
 
     public ScopedVariables getVars() {
@@ -100,6 +193,10 @@ public class AkitaEnvironment {
         getVariables().put(name, object);
     }
 
+    public void setVar(String name, Object object, VariableScope scope) {
+        getVariables().put(name, object, scope);
+    }
+
     public Scenario getScenario() {
         return scenario;
     }
@@ -122,8 +219,27 @@ public class AkitaEnvironment {
 
     private ScopedVariables getVariables() {
         if (variables.get() == null) {
-            variables.set(new ScopedVariables());
+            variables.set(new ScopedVariables(scenario != null ? scenario.getUri() : null));
         }
         return variables.get();
     }
+
+    private static void loadReportSettings() {
+        REPORT_LOG_LEVEL = parseLogLevel(loadProperty("reportLogLevel", "INFO"));
+        REPORT_ENTRY_MAX_LENGTH = loadPropertyInt("reportEntryMaxLength", 0);
+        ATTACHMENT_INLINE_MAX_SIZE = loadPropertyInt("attachmentInlineMaxSize", 1024 * 1024);
+    }
+
+    /**
+     * Разбирает уровень отчета без учета регистра и локали, при неизвестном значении используется INFO
+     */
+    private static LogLevel parseLogLevel(String value) {
+        try {
+            return LogLevel.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warn("Неизвестное значение reportLogLevel '" + value + "', используется INFO. Допустимые значения: "
+                    + Arrays.toString(LogLevel.values()));
+            return LogLevel.INFO;
+        }
+    }
 }
@@ -35,6 +35,7 @@ import static com.codeborne.selenide.Selenide.$$;
 import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.addChangeListener;
 import static ru.alfabank.tests.core.helpers.PropertyLoader.loadProperty;
 
 /*
@@ -46,8 +47,11 @@ public abstract class AkitaPage extends ElementsContainer {
      * Стандартный таймаут ожидания элементов в миллисекундах
      */
     private static final String WAITING_APPEAR_TIMEOUT_IN_MILLISECONDS = "8000";
-    private static final Integer TIMEOUT = Integer.parseInt(loadProperty("waitingAppearTimeout",
-            WAITING_APPEAR_TIMEOUT_IN_MILLISECONDS));
+    private static volatile Integer TIMEOUT = loadTimeout();
+
+    static {
+        addChangeListener(properties -> TIMEOUT = loadTimeout());
+    }
 
     /**
      * Список всех элементов страницы
@@ -467,4 +471,11 @@ public abstract class AkitaPage extends ElementsContainer {
     private Object extractFieldValueViaReflection(Field field) {
         return Reflection.extractFieldValue(field, this);
     }
+
+    /**
+     * Читает стандартный таймаут ожидания элементов из свойства waitingAppearTimeout
+     */
+    private static Integer loadTimeout() {
+        return Integer.parseInt(loadProperty("waitingAppearTimeout", WAITING_APPEAR_TIMEOUT_IN_MILLISECONDS));
+    }
 }
@@ -16,12 +16,17 @@ import com.codeborne.selenide.Selenide;
 import cucumber.api.Scenario;
 import lombok.extern.slf4j.Slf4j;
 import ru.alfabank.alfatest.cucumber.ScopedVariables;
+import ru.alfabank.alfatest.cucumber.VariableScope;
 
+import java.io.File;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
- * Главный класс, отвечающий за сопровождение тестовых шагов
+ * Главный класс, отвечающий за сопровождение тестовых шагов.
+ * Среда сценария хранится отдельно для каждого потока, поэтому сценарии могут выполняться параллельно
+ * в одной JVM: у каждого потока свои переменные, страницы, текущая страница и браузер
  */
 @Slf4j
 public final class AkitaScenario {
@@ -29,10 +34,10 @@ public final class AkitaScenario {
     private static final AkitaScenario INSTANCE = new AkitaScenario();
 
     /**
-     * Среда прогона тестов, хранит в себе: Cucumber.Scenario,
+     * Среда прогона тестов текущего потока, хранит в себе: Cucumber.Scenario,
      * переменные, объявленные пользователем в сценарии и страницы, тестирование которых будет производиться
      */
-    private static AkitaEnvironment environment;
+    private static final ThreadLocal<AkitaEnvironment> ENVIRONMENT = new ThreadLocal<>();
 
     private AkitaScenario() {
     }
@@ -42,11 +47,18 @@ public final class AkitaScenario {
     }
 
     public AkitaEnvironment getEnvironment() {
-        return environment;
+        return ENVIRONMENT.get();
     }
 
     public void setEnvironment(AkitaEnvironment akitaEnvironment) {
-        environment = akitaEnvironment;
+        ENVIRONMENT.set(akitaEnvironment);
+    }
+
+    /**
+     * Удаляет среду сценария текущего потока, вызывается по завершению сценария
+     */
+    public void removeEnvironment() {
+        ENVIRONMENT.remove();
     }
 
     public static void sleep(int seconds) {
@@ -57,7 +69,7 @@ public final class AkitaScenario {
      * Получение страницы, тестирование которой производится в данный момент
      */
     public AkitaPage getCurrentPage() {
-        return environment.getPages().getCurrentPage();
+        return getEnvironment().getPages().getCurrentPage();
     }
 
     /**
@@ -68,7 +80,7 @@ public final class AkitaScenario {
             throw new IllegalArgumentException("Происходит переход на несуществующую страницу. " +
                     "Проверь аннотации @Name у используемых страниц");
         }
-        environment.getPages().setCurrentPage(page);
+        getEnvironment().getPages().setCurrentPage(page);
     }
 
     /**
@@ -119,6 +131,52 @@ public final class AkitaScenario {
         this.getEnvironment().write(object);
     }
 
+    /**
+     * Выводит дополнительный информационный текст в отчет (уровень логирования INFO).
+     * Текст формируется только если записи уровня INFO выводятся в отчет
+     */
+    public void write(Supplier<String> message) {
+        write(LogLevel.INFO, message);
+    }
+
+    /**
+     * Выводит дополнительный информационный текст в отчет с заданным уровнем логирования.
+     * Текст формируется только если записи этого уровня выводятся в отчет (свойство reportLogLevel)
+     *
+     * @param level   уровень записи
+     * @param message поставщик текста записи
+     */
+    public void write(LogLevel level, Supplier<String> message) {
+        this.getEnvironment().write(level, message);
+    }
+
+    /**
+     * Прикрепляет вложение к отчету, большие вложения сохраняются в файлы прогона
+     *
+     * @param data     содержимое вложения
+     * @param mimeType тип вложения
+     */
+    public void embed(byte[] data, String mimeType) {
+        this.getEnvironment().embed(data, mimeType);
+    }
+
+    /**
+     * Прикрепляет файл к отчету, большие файлы копируются в файлы прогона без чтения в память
+     *
+     * @param file     файл вложения
+     * @param mimeType тип вложения
+     */
+    public void embed(File file, String mimeType) {
+        this.getEnvironment().embed(file, mimeType);
+    }
+
+    /**
+     * Проверяет, выводятся ли в отчет записи заданного уровня
+     */
+    public boolean isLoggable(LogLevel level) {
+        return AkitaEnvironment.isLoggable(level);
+    }
+
     /**
      * Получение переменной по имени, заданного пользователем, из пула переменных "variables" в AkitaEnvironment
      *
@@ -187,6 +245,19 @@ public final class AkitaScenario {
         this.getEnvironment().setVar(name, object);
     }
 
+    /**
+     * Добавление переменной в заданную область видимости: сценарий, feature-файл или весь прогон.
+     * Глобальные переменные и переменные feature-файла доступны последующим сценариям,
+     * что позволяет не вычислять повторно дорогие значения (токены авторизации, справочные данные)
+     *
+     * @param name   Имя переменной заданное пользователем, для которого сохраняется значение
+     * @param object значение, которое нужно сохранить в переменную
+     * @param scope  область видимости переменной
+     */
+    public void setVar(String name, Object object, VariableScope scope) {
+        this.getEnvironment().setVar(name, object, scope);
+    }
+
     /**
      * Получение всех переменных из пула "variables" в классе AkitaEnvironment
      */
@@ -13,6 +13,7 @@
 package ru.alfabank.alfatest.cucumber.api;
 
 import org.reflections.Reflections;
+import ru.alfabank.tests.core.helpers.StartupProfiler;
 
 import java.lang.annotation.Annotation;
 import java.util.Set;
@@ -22,7 +23,8 @@ import java.util.Set;
  */
 public class AnnotationScanner {
 
-    private static final Reflections REFLECTION = new Reflections();
+    private static final Reflections REFLECTION =
+            StartupProfiler.measure("AnnotationScanner: сканирование классов", Reflections::new);
 
     public Set<Class<?>> getClassesAnnotatedWith(Class<? extends Annotation> annotation) {
         return REFLECTION.getTypesAnnotatedWith(annotation);
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.alfatest.cucumber.api;
+
+/**
+ * Уровни детализации записей в отчет сценария.
+ * Уровень отчета задается свойством reportLogLevel, по умолчанию INFO
+ */
+public enum LogLevel {
+    /**
+     * Записи в отчет не выводятся
+     */
+    OFF,
+    /**
+     * Основные записи шагов, включая тела запросов и ответов в исходном виде
+     */
+    INFO,
+    /**
+     * Подробные записи, например отформатированные тела ответов
+     */
+    DEBUG;
+
+    /**
+     * Проверяет, выводятся ли в отчет записи уровня level при текущем уровне отчета
+     *
+     * @param level уровень записи
+     */
+    public boolean includes(LogLevel level) {
+        return level != OFF && level.ordinal() <= ordinal();
+    }
+}
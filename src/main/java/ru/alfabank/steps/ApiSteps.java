@@ -119,7 +119,7 @@ public class ApiSteps extends BaseMethods {
             if (!actualJsonElement.equals(expectedJsonElement)) {
                 error = true;
             }
-            akitaScenario.write("JsonPath: " + jsonPath + ", ожидаемое значение: " + expectedJsonElement + ", фактическое значение: " + actualJsonElement);
+            akitaScenario.write(() -> "JsonPath: " + jsonPath + ", ожидаемое значение: " + expectedJsonElement + ", фактическое значение: " + actualJsonElement);
         }
         if (error)
             throw new RuntimeException("Ожидаемые и фактические значения в json не совпадают");
@@ -148,7 +148,7 @@ public class ApiSteps extends BaseMethods {
                 continue;
             }
             akitaScenario.setVar(varName, jsonElement.toString());
-            akitaScenario.write("JsonPath: " + jsonPath + ", значение: " + jsonElement + ", записано в переменную: " + varName);
+            akitaScenario.write(() -> "JsonPath: " + jsonPath + ", значение: " + jsonElement + ", записано в переменную: " + varName);
         }
         if (error)
             throw new RuntimeException("В json не найдено значение по заданному jsonpath");
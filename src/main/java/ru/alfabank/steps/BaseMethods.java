@@ -13,8 +13,6 @@
 package ru.alfabank.steps;
 
 import com.codeborne.selenide.SelenideElement;
-import com.galenframework.api.Galen;
-import com.galenframework.reports.model.LayoutReport;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.spi.json.GsonJsonProvider;
 import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
@@ -25,13 +23,16 @@ import io.restassured.specification.RequestSender;
 import io.restassured.specification.RequestSpecification;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
 import org.hamcrest.text.IsEqualIgnoringCase;
 import org.openqa.selenium.Keys;
 import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
+import ru.alfabank.alfatest.cucumber.api.LogLevel;
+import ru.alfabank.tests.core.helpers.GalenLayoutChecker;
+import ru.alfabank.tests.core.helpers.ResourceHelper;
 import ru.alfabank.tests.core.rest.RequestParam;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,7 +58,11 @@ public class BaseMethods {
 
     protected AkitaScenario akitaScenario = AkitaScenario.getInstance();
 
-    protected static final int DEFAULT_TIMEOUT = loadPropertyInt("waitingCustomElementsTimeout", 15000);
+    protected static volatile int DEFAULT_TIMEOUT = loadPropertyInt("waitingCustomElementsTimeout", 15000);
+
+    static {
+        addChangeListener(properties -> DEFAULT_TIMEOUT = loadPropertyInt("waitingCustomElementsTimeout", 15000));
+    }
 
     protected static final String SPECS_DIR_PATH = loadSystemPropertyOrDefault("specsDir",
             System.getProperty("user.dir") + "/src/test/resources/specs/");
@@ -71,6 +76,7 @@ public class BaseMethods {
      * @param paramsTable массив с параметрами
      * @return сформированный запрос
      */
+    @SneakyThrows(FileNotFoundException.class)
     public RequestSender createRequest(List<RequestParam> paramsTable) {
         String body = null;
         RequestSpecification request = given();
@@ -89,26 +95,39 @@ public class BaseMethods {
                     body = resolveVars(value);
                     request.body(body);
                     break;
+                case BODY_FILE:
+                    File bodyFile = ResourceHelper.resolvePath(resolveVars(value)).toFile();
+                    akitaScenario.write(() -> "Тело запроса из файла " + bodyFile + ", размер " + bodyFile.length() + " байт");
+                    request.body(bodyFile);
+                    break;
                 default:
                     throw new IllegalArgumentException(String.format("Некорректно задан тип %s для параметра запроса %s ", requestParam.getType(), name));
             }
         }
         if (body != null) {
-            akitaScenario.write("Тело запроса:\n" + body);
+            String requestBody = body;
+            akitaScenario.write(() -> "Тело запроса:\n" + requestBody);
         }
         return request;
     }
 
     /**
-     * Получает body из ответа и сохраняет в переменную
+     * Получает body из ответа и сохраняет в переменную.
+     * Тело успешного ответа выводится в отчет без форматирования,
+     * отформатированное тело выводится только при уровне отчета DEBUG или при ошибке
      *
      * @param variableName имя переменной, в которую будет сохранен ответ
      * @param response     ответ от http запроса
      */
     public void getBodyAndSaveToVariable(String variableName, Response response) {
         if (response.statusCode() >= 200 && response.statusCode() < 300) {
-            akitaScenario.setVar(variableName, response.getBody().asString());
-            akitaScenario.write("Тело ответа : \n" + new Prettifier().getPrettifiedBodyIfPossible(response, response));
+            String body = response.getBody().asString();
+            akitaScenario.setVar(variableName, body);
+            if (akitaScenario.isLoggable(LogLevel.DEBUG)) {
+                akitaScenario.write(LogLevel.DEBUG, () -> "Тело ответа : \n" + new Prettifier().getPrettifiedBodyIfPossible(response, response));
+            } else {
+                akitaScenario.write(() -> "Тело ответа : \n" + body);
+            }
         } else {
             fail("Некорректный ответ на запрос: " + new Prettifier().getPrettifiedBodyIfPossible(response, response));
         }
@@ -124,7 +143,7 @@ public class BaseMethods {
     public boolean checkStatusCode(Response response, int expectedStatusCode) {
         int statusCode = response.getStatusCode();
         if (statusCode != expectedStatusCode) {
-            akitaScenario.write("Получен неверный статус код ответа " + statusCode + ". Ожидаемый статус код " + expectedStatusCode);
+            akitaScenario.write(() -> "Получен неверный статус код ответа " + statusCode + ". Ожидаемый статус код " + expectedStatusCode);
         }
         return statusCode == expectedStatusCode;
     }
@@ -180,7 +199,7 @@ public class BaseMethods {
             return false;
         }
         log.info(message + " = " + result);
-        akitaScenario.write(message + " = " + result);
+        akitaScenario.write(() -> message + " = " + result);
         return true;
     }
 
@@ -202,9 +221,9 @@ public class BaseMethods {
     public void deleteFiles(File[] filesToDelete) {
         for (File file : filesToDelete) {
             if (file.delete()) {
-                akitaScenario.write("Файл: " + file + " удален");
+                akitaScenario.write(() -> "Файл: " + file + " удален");
             } else {
-                akitaScenario.write("Проблемы с удалением файла: " + file);
+                akitaScenario.write(() -> "Проблемы с удалением файла: " + file);
             }
         }
     }
@@ -266,15 +285,14 @@ public class BaseMethods {
     }
 
     /**
-     * Прикрепляет файл к текущему сценарию в cucumber отчете
+     * Прикрепляет файл к текущему сценарию в cucumber отчете.
+     * Файлы больше attachmentInlineMaxSize байт сохраняются в директорию вложений прогона, в отчет выводится путь к ним
      *
      * @param fileName - название файла
      * @param mimeType - тип файла
      */
-    @SneakyThrows
     public static void embedFileToReport(File fileName, String mimeType) {
-        AkitaScenario.getInstance().getScenario()
-                .embed(FileUtils.readFileToByteArray(fileName), mimeType);
+        AkitaScenario.getInstance().embed(fileName, mimeType);
     }
 
     @SneakyThrows
@@ -284,22 +302,7 @@ public class BaseMethods {
      * Путь /build/results-img/ можно переопределить, задав системную переменную imgDiff
      */
     public void checkLayoutAccordingToSpec(String spec, List<String> tags) {
-        LayoutReport report = Galen.checkLayout(getWebDriver(), SPECS_DIR_PATH + spec, tags);
-        report.getFileStorage().copyAllFilesTo(new File(IMG_DIFF_PATH));
-        if (report.errors() > 0) {
-            embedScreenshotAndFail(report);
-        }
-    }
-
-    private void embedScreenshotAndFail(LayoutReport report) {
-        Map<String, File> screenshots = report.getFileStorage().getFiles();
-        screenshots.forEach((key, value) -> {
-            if (key.contains("map") || key.contains("expected") || key.contains("actual")) {
-                akitaScenario.write(key);
-                embedFileToReport(value, "image/png");
-            }
-        });
-        fail(report.getValidationErrorResults().toString());
+        GalenLayoutChecker.checkLayout(SPECS_DIR_PATH + spec, tags, IMG_DIFF_PATH);
     }
 
     public void loadPage(String nameOfPage) {
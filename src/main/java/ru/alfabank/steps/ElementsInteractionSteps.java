@@ -48,7 +48,7 @@ public class ElementsInteractionSteps extends BaseMethods {
     @When("^value from the (?:element|field) named \"([^\"]*)\" has been saved to the variable named \"([^\"]*)\"$")
     public void storeElementValueInVariable(String elementName, String variableName) {
         akitaScenario.setVar(variableName, akitaScenario.getCurrentPage().getAnyElementText(elementName));
-        akitaScenario.write("Значение [" + akitaScenario.getCurrentPage().getAnyElementText(elementName) + "] сохранено в переменную [" + variableName + "]");
+        akitaScenario.write(() -> "Значение [" + akitaScenario.getCurrentPage().getAnyElementText(elementName) + "] сохранено в переменную [" + variableName + "]");
     }
 
     /**
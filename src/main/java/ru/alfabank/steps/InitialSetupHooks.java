@@ -21,8 +21,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.Proxy;
 import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
 import ru.alfabank.alfatest.cucumber.api.AkitaEnvironment;
 import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
+import ru.alfabank.tests.core.drivers.CustomDriverProvider;
+import ru.alfabank.tests.core.drivers.DevToolsManager;
+import ru.alfabank.tests.core.drivers.ResourceTypeBlocker;
+import ru.alfabank.tests.core.drivers.WebDriverPool;
+import ru.alfabank.tests.core.helpers.StartupProfiler;
 
 import static com.codeborne.selenide.WebDriverRunner.*;
 import static ru.alfabank.tests.core.drivers.CustomDriverProvider.REMOTE_URL;
@@ -30,6 +36,15 @@ import static ru.alfabank.tests.core.drivers.CustomDriverProvider.REMOTE_URL;
 @Slf4j
 public class InitialSetupHooks extends BaseMethods {
 
+    /**
+     * Выводит в лог сводку по этапам запуска фреймворка перед первым сценарием,
+     * если включено профилирование запуска (-DstartupProfiling=true)
+     */
+    @Before(order = 0)
+    public void reportStartupProfile() {
+        StartupProfiler.report();
+    }
+
     /**
      * Создает настойки прокси для запуска драйвера
      */
@@ -83,19 +98,58 @@ public class InitialSetupHooks extends BaseMethods {
         if (scenario.isFailed() && hasWebDriverStarted()) {
             AkitaScenario.sleep(1);
             final byte[] screenshot = ((TakesScreenshot) getWebDriver()).getScreenshotAs(OutputType.BYTES);
-            scenario.embed(screenshot, "image/png");
+            akitaScenario.embed(screenshot, "image/png");
+        }
+    }
+
+    /**
+     * Выводит в отчет сценария количество заблокированных ресурсов и сэкономленный трафик,
+     * если задан профиль блокировки ресурсов (см. ResourceTypeBlocker)
+     */
+    @After(order = 15)
+    public void reportBlockedResources() {
+        if (ResourceTypeBlocker.isConfigured() && hasWebDriverStarted()) {
+            ResourceTypeBlocker.Stats stats = ResourceTypeBlocker.getScenarioStats(getWebDriver());
+            if (stats != null && stats.getRequests() > 0) {
+                akitaScenario.write(() -> "Заблокировано ресурсов: " + stats);
+            }
         }
     }
 
     /**
-     * По завершению теста удаляет все куки и закрывает веб-браузер
+     * По завершению теста удаляет все куки и закрывает веб-браузер вместе с его соединением devTools.
+     * При включенном пуле сессий (-DwebDriverPool=true) браузер не закрывается, а возвращается в пул,
+     * соединение devTools закрывает пул при закрытии браузера
      */
 
     @After(order = 10)
     public void closeWebDriver() {
         if (hasWebDriverStarted()) {
-            getWebDriver().manage().deleteAllCookies();
+            WebDriver driver = getWebDriver();
+            driver.manage().deleteAllCookies();
+            if (!WebDriverPool.isEnabled()) {
+                DevToolsManager.close(driver);
+            }
             WebDriverRunner.closeWebDriver();
         }
     }
+
+    /**
+     * По завершению сценария очищает переменные сценария и удаляет их временные файлы
+     */
+    @After(order = 5)
+    public void clearScenarioVariables() {
+        akitaScenario.getVars().clear();
+    }
+
+    /**
+     * По завершению сценария удаляет среду сценария текущего потока,
+     * чтобы поток, выполняющий следующий сценарий, не получил страницы и переменные предыдущего.
+     * BrowserMob прокси браузера сценария отвязывается от потока и, если браузер закрыт, останавливается
+     */
+    @After(order = 1)
+    public void removeScenarioEnvironment() {
+        akitaScenario.removeEnvironment();
+        CustomDriverProvider.releaseProxy();
+    }
 }
\ No newline at end of file
@@ -92,7 +92,8 @@ public class InputInteractionSteps extends BaseMethods {
         SelenideElement valueInput = akitaScenario.getCurrentPage().getElement(fieldName);
         valueInput.setValue("");
         valueInput.setValue(currentStringDate);
-        akitaScenario.write("Текущая дата " + currentStringDate);
+        String enteredDate = currentStringDate;
+        akitaScenario.write(() -> "Текущая дата " + enteredDate);
     }
 
     /**
@@ -124,7 +125,7 @@ public class InputInteractionSteps extends BaseMethods {
         else lang = "en";
         String charSeq = getRandCharSequence(seqLength, lang);
         valueInput.setValue(charSeq);
-        akitaScenario.write("Строка случайных символов равна :" + charSeq);
+        akitaScenario.write(() -> "Строка случайных символов равна :" + charSeq);
     }
 
     /**
@@ -141,7 +142,7 @@ public class InputInteractionSteps extends BaseMethods {
         String charSeq = getRandCharSequence(seqLength, lang);
         valueInput.setValue(charSeq);
         akitaScenario.setVar(varName, charSeq);
-        akitaScenario.write("Строка случайных символов равна :" + charSeq);
+        akitaScenario.write(() -> "Строка случайных символов равна :" + charSeq);
     }
 
     /**
@@ -154,7 +155,7 @@ public class InputInteractionSteps extends BaseMethods {
         cleanField(elementName);
         String numSeq = RandomStringUtils.randomNumeric(seqLength);
         valueInput.setValue(numSeq);
-        akitaScenario.write(String.format("В поле [%s] введено значение [%s]", elementName, numSeq));
+        akitaScenario.write(() -> String.format("В поле [%s] введено значение [%s]", elementName, numSeq));
     }
 
     /**
@@ -168,7 +169,7 @@ public class InputInteractionSteps extends BaseMethods {
         String numSeq = RandomStringUtils.randomNumeric(seqLength);
         valueInput.setValue(numSeq);
         akitaScenario.setVar(varName, numSeq);
-        akitaScenario.write(String.format("В поле [%s] введено значение [%s] и сохранено в переменную [%s]",
+        akitaScenario.write(() -> String.format("В поле [%s] введено значение [%s] и сохранено в переменную [%s]",
                 elementName, numSeq, varName));
     }
 
@@ -181,10 +182,11 @@ public class InputInteractionSteps extends BaseMethods {
     public void setRandomNumSequenceWithIntAndFract(String fieldName, double valueFrom, double valueTo, String outputFormat, String saveToVariableName) {
         outputFormat = outputFormat.replaceAll("#", "0");
         double finalValue = ThreadLocalRandom.current().nextDouble(valueFrom, valueTo);
-        setFieldValue(fieldName, new DecimalFormat(outputFormat).format(finalValue));
-        akitaScenario.setVar(saveToVariableName, new DecimalFormat(outputFormat).format(finalValue));
-        akitaScenario.write(String.format("В поле [%s] введено значение [%s] и сохранено в переменную [%s]",
-                fieldName, new DecimalFormat(outputFormat).format(finalValue), saveToVariableName));
+        String formattedValue = new DecimalFormat(outputFormat).format(finalValue);
+        setFieldValue(fieldName, formattedValue);
+        akitaScenario.setVar(saveToVariableName, formattedValue);
+        akitaScenario.write(() -> String.format("В поле [%s] введено значение [%s] и сохранено в переменную [%s]",
+                fieldName, formattedValue, saveToVariableName));
     }
 
     /**
@@ -196,7 +198,8 @@ public class InputInteractionSteps extends BaseMethods {
     public void inputRandomNumSequenceWithIntAndFract(String fieldName, double valueFrom, double valueTo, String outputFormat) {
         double finalValue = ThreadLocalRandom.current().nextDouble(valueFrom, valueTo);
         outputFormat = outputFormat.replaceAll("#", "0");
-        setFieldValue(fieldName, new DecimalFormat(outputFormat).format(finalValue));
-        akitaScenario.write(String.format("В поле [%s] введено значение [%s]", fieldName, new DecimalFormat(outputFormat).format(finalValue)));
+        String formattedValue = new DecimalFormat(outputFormat).format(finalValue);
+        setFieldValue(fieldName, formattedValue);
+        akitaScenario.write(() -> String.format("В поле [%s] введено значение [%s]", fieldName, formattedValue));
     }
 }
\ No newline at end of file
@@ -79,7 +79,7 @@ public class ListInteractionSteps extends BaseMethods {
         SelenideElement element = listOfElementsFromPage.get(getRandom(listOfElementsFromPage.size()));
         element.shouldBe(Condition.visible).click();
         akitaScenario.setVar(varName, akitaScenario.getCurrentPage().getAnyElementText(element).trim());
-        akitaScenario.write(String.format("Переменной [%s] присвоено значение [%s] из списка [%s]", varName,
+        akitaScenario.write(() -> String.format("Переменной [%s] присвоено значение [%s] из списка [%s]", varName,
                 akitaScenario.getVar(varName), listName));
     }
 
@@ -102,7 +102,7 @@ public class ListInteractionSteps extends BaseMethods {
         List<SelenideElement> listOfElementsFromPage = akitaScenario.getCurrentPage().getElementsList(listName);
         listOfElementsFromPage.get(getRandom(listOfElementsFromPage.size()))
                 .shouldBe(Condition.visible).click();
-        akitaScenario.write("Выбран случайный элемент: " + listOfElementsFromPage);
+        akitaScenario.write(() -> "Выбран случайный элемент: " + listOfElementsFromPage);
     }
 
     /**
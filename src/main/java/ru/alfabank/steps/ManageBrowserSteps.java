@@ -20,6 +20,7 @@ import cucumber.api.java.ru.Когда;
 import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.Cookie;
 import org.openqa.selenium.Dimension;
+import ru.alfabank.tests.core.drivers.ResourceTypeBlocker;
 
 import java.util.Set;
 
@@ -34,6 +35,16 @@ import static ru.alfabank.alfatest.cucumber.ScopedVariables.resolveVars;
 @Slf4j
 public class ManageBrowserSteps extends BaseMethods {
 
+    /**
+     * Включаем или отключаем блокировку ресурсов по профилю blockedResourceTypes и blockedResourceMaxSize,
+     * например перед открытием страницы, для которой нужны изображения и шрифты
+     */
+    @Когда("^(включена|отключена) блокировка изображений, шрифтов и медиа$")
+    @When("^blocking of images, fonts and media has been (enabled|disabled)$")
+    public void setResourceBlocking(String state) {
+        ResourceTypeBlocker.setEnabled(getWebDriver(), "включена".equals(state) || "enabled".equals(state));
+    }
+
     /**
      * Удаляем все cookies
      */
@@ -83,7 +94,7 @@ public class ManageBrowserSteps extends BaseMethods {
     public void switchToTheNextTab() {
         String nextWindowHandle = nextWindowHandle();
         getWebDriver().switchTo().window(nextWindowHandle);
-        akitaScenario.write("Текущая вкладка " + nextWindowHandle);
+        akitaScenario.write(() -> "Текущая вкладка " + nextWindowHandle);
     }
 
     /**
@@ -102,7 +113,7 @@ public class ManageBrowserSteps extends BaseMethods {
     @And("^set screen resolution to (\\d+) х (\\d+)$")
     public void setBrowserWindowSize(int width, int height) {
         getWebDriver().manage().window().setSize(new Dimension(width, height));
-        akitaScenario.write("Установлены размеры окна браузера: ширина " + width + " высота" + height);
+        akitaScenario.write(() -> "Установлены размеры окна браузера: ширина " + width + " высота" + height);
     }
 
     /**
@@ -54,9 +54,9 @@ public class RoundUpSteps extends BaseMethods {
     @И("^сохранено значение \"([^\"]*)\" из property файла в переменную \"([^\"]*)\"$")
     @And("^value of \"([^\"]*)\" from property-file has been saved to the variable \"([^\"]*)\"$")
     public void saveValueToVar(String propertyVariableName, String variableName) {
-        propertyVariableName = loadProperty(propertyVariableName);
-        akitaScenario.setVar(variableName, propertyVariableName);
-        akitaScenario.write("Значение сохраненной переменной " + propertyVariableName);
+        String propertyValue = loadProperty(propertyVariableName);
+        akitaScenario.setVar(variableName, propertyValue);
+        akitaScenario.write(() -> "Значение сохраненной переменной " + propertyValue);
     }
 
     /**
@@ -132,7 +132,7 @@ public class RoundUpSteps extends BaseMethods {
     @And("^screenshot of the current page has been taken$")
     public void takeScreenshot() {
         final byte[] screenshot = ((TakesScreenshot) getWebDriver()).getScreenshotAs(OutputType.BYTES);
-        AkitaScenario.getInstance().getScenario().embed(screenshot, "image/png");
+        AkitaScenario.getInstance().embed(screenshot, "image/png");
     }
 
     /**
@@ -149,7 +149,7 @@ public class RoundUpSteps extends BaseMethods {
             if (template.contains(regexp)) {
                 template = template.replaceAll(regexp, replacement);
             } else {
-                akitaScenario.write("В шаблоне не найден элемент " + regexp);
+                akitaScenario.write(() -> "В шаблоне не найден элемент " + regexp);
                 error = true;
             }
         }
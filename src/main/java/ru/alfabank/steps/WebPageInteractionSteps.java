@@ -12,7 +12,10 @@
  */
 package ru.alfabank.steps;
 
+import com.codeborne.selenide.Condition;
+import com.codeborne.selenide.Configuration;
 import com.codeborne.selenide.SelenideElement;
+import com.codeborne.selenide.ex.UIAssertionError;
 import cucumber.api.java.en.And;
 import cucumber.api.java.en.When;
 import cucumber.api.java.ru.И;
@@ -22,6 +25,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.By;
 import org.openqa.selenium.Keys;
 import org.openqa.selenium.interactions.Actions;
+import ru.alfabank.tests.core.helpers.PageReadinessWaiter;
+import ru.alfabank.tests.core.helpers.SessionStateCache;
+
+import java.time.Duration;
 
 import static com.codeborne.selenide.Selenide.*;
 import static com.codeborne.selenide.WebDriverRunner.getWebDriver;
@@ -37,6 +44,8 @@ import static ru.alfabank.tests.core.helpers.PropertyLoader.loadProperty;
 @Slf4j
 public class WebPageInteractionSteps extends BaseMethods {
 
+    private static final String LOGIN_SUCCESS_SELECTOR = "loginSuccessSelector";
+
     /**
      * Выполняется обновление страницы
      */
@@ -58,21 +67,23 @@ public class WebPageInteractionSteps extends BaseMethods {
     public void goToUrl(String address) {
         String url = resolveVars(getPropertyOrStringVariableOrValue(address));
         open(url);
-        akitaScenario.write("Url = " + url);
+        akitaScenario.write(() -> "Url = " + url);
     }
 
     /**
      * Выполняется переход по заданной ссылке.
-     * Шаг содержит проверку, что после перехода загружена заданная страница.
+     * Шаг содержит проверку, что после перехода загружена заданная страница,
+     * перед проверкой ожидается загрузка документа и завершение сетевых запросов (см. PageReadinessWaiter).
      * Ссылка может передаваться как строка, так и как ключ из application.properties
      */
     @И("^совершен переход на страницу \"([^\"]*)\" по ссылке \"([^\"]*)\"$")
     @When("^opened page \"([^\"]*)\" by link \"([^\"]*)\"$")
     public void goToSelectedPageByLink(String pageName, String urlOrName) {
         String address = loadProperty(urlOrName, resolveVars(urlOrName));
-        akitaScenario.write(" url = " + address);
+        akitaScenario.write(() -> " url = " + address);
+        PageReadinessWaiter.markCurrentDocument();
         open(address);
-        sleep(1000);
+        PageReadinessWaiter.waitForPageReady();
         loadPage(pageName);
     }
 
@@ -84,7 +95,7 @@ public class WebPageInteractionSteps extends BaseMethods {
     public void urlClickAndCheckRedirection(String pageName, String elementName) {
         akitaScenario.getCurrentPage().getElement(elementName).click();
         loadPage(pageName);
-        akitaScenario.write(" url = " + url());
+        akitaScenario.write(() -> " url = " + url());
     }
 
     /**
@@ -99,10 +110,26 @@ public class WebPageInteractionSteps extends BaseMethods {
      * логин и пароль должны быть указаны со следующими ключами:
      * user.login - для логина и
      * user.password - для пароля
+     * При включенном кэше сессий (-DsessionStateCache=true) после первого входа пользователя
+     * его cookies, localStorage и sessionStorage сохраняются, а в следующих сценариях переносятся в браузер без ввода логина.
+     * Вход считается выполненным, если в течение Configuration.timeout появился элемент, заданный css-селектором
+     * loginSuccessSelector, а если селектор не задан - исчезло поле "Логин".
+     * Если после переноса признак входа не получен, сохраненная сессия удаляется и вход выполняется через UI
      */
     @Пусть("^пользователь \"([^\"]*)\" ввел логин и пароль$")
     @When("^user \"([^\"]*)\" entered login and password$")
     public void loginByUserData(String userCode) {
+        boolean sessionCacheEnabled = SessionStateCache.isEnabled();
+        SessionStateCache sessionCache = sessionCacheEnabled ? SessionStateCache.getInstance() : null;
+        if (sessionCacheEnabled && sessionCache.restore(userCode, getWebDriver())) {
+            PageReadinessWaiter.waitForPageReady();
+            if (waitForLoggedIn()) {
+                akitaScenario.write(() -> "Сессия пользователя " + userCode + " восстановлена из кэша");
+                return;
+            }
+            sessionCache.invalidate(userCode);
+            akitaScenario.write(() -> "Сохраненная сессия пользователя " + userCode + " не принята, выполняется вход через UI");
+        }
         String login = loadProperty(userCode + ".login");
         String password = loadProperty(userCode + ".password");
         cleanField("Логин");
@@ -110,6 +137,27 @@ public class WebPageInteractionSteps extends BaseMethods {
         cleanField("Пароль");
         akitaScenario.getCurrentPage().getElement("Пароль").sendKeys(password);
         akitaScenario.getCurrentPage().getElement("Войти").click();
+        if (sessionCacheEnabled && waitForLoggedIn()) {
+            sessionCache.capture(userCode, getWebDriver());
+        }
+    }
+
+    /**
+     * Ожидает признак входа в течение Configuration.timeout и повторно проверяет его после загрузки страницы,
+     * чтобы не принять за вход промежуточное состояние, в котором поле "Логин" еще не отрисовано
+     */
+    private boolean waitForLoggedIn() {
+        String successSelector = loadProperty(LOGIN_SUCCESS_SELECTOR, "");
+        SelenideElement signal = successSelector.isEmpty()
+                ? akitaScenario.getCurrentPage().getElement("Логин") : $(successSelector);
+        Condition condition = successSelector.isEmpty() ? Condition.hidden : Condition.visible;
+        try {
+            signal.shouldBe(condition, Duration.ofMillis(Configuration.timeout));
+        } catch (UIAssertionError e) {
+            return false;
+        }
+        PageReadinessWaiter.waitForPageReady();
+        return signal.is(condition);
     }
 
     /**
@@ -134,7 +182,7 @@ public class WebPageInteractionSteps extends BaseMethods {
 
 
     /**
-     * Скроллит страницу вниз до появления элемента каждую секунду.
+     * Скроллит страницу вниз до появления элемента, после каждой прокрутки ожидая завершения подгрузки содержимого.
      * Если достигнут футер страницы и элемент не найден - выбрасывается exception.
      */
     @И("^страница прокручена до появления элемента \"([^\"]*)\"$")
@@ -147,13 +195,14 @@ public class WebPageInteractionSteps extends BaseMethods {
                 break;
             }
             executeJavaScript("return window.scrollBy(0, 250);");
-            sleep(1000);
+            PageReadinessWaiter.waitForNetworkIdle();
         } while (!atBottom());
         assertThat("Элемент " + elementName + " не найден", el.isDisplayed());
     }
 
     /**
-     * Скроллит страницу вниз до появления элемента с текстом из property файла, из переменной сценария или указанному в шаге каждую секунду.
+     * Скроллит страницу вниз до появления элемента с текстом из property файла, из переменной сценария или указанному в шаге,
+     * после каждой прокрутки ожидая завершения подгрузки содержимого.
      * Если достигнут футер страницы и элемент не найден - выбрасывается exception.
      */
     @И("^страница прокручена до появления элемента с текстом \"([^\"]*)\"$")
@@ -166,7 +215,7 @@ public class WebPageInteractionSteps extends BaseMethods {
                 break;
             }
             executeJavaScript("return window.scrollBy(0, 250);");
-            sleep(1000);
+            PageReadinessWaiter.waitForNetworkIdle();
         } while (!atBottom());
         assertThat("Элемент с текстом " + expectedValue + " не найден", el.isDisplayed());
     }
@@ -189,6 +238,6 @@ public class WebPageInteractionSteps extends BaseMethods {
     public void savePageTitleToVariable(String variableName) {
         String titleName = getWebDriver().getTitle().trim();
         akitaScenario.setVar(variableName, titleName);
-        akitaScenario.write("Значение заголовка страницы [" + titleName + "] сохранено в переменную [" + variableName + "]");
+        akitaScenario.write(() -> "Значение заголовка страницы [" + titleName + "] сохранено в переменную [" + variableName + "]");
     }
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import com.github.kklisura.cdt.protocol.commands.Target;
+import com.github.kklisura.cdt.protocol.types.target.TargetInfo;
+import com.github.kklisura.cdt.services.ChromeDevToolsService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ClassUtils;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.CapabilityType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Запуск нескольких изолированных контекстов браузера (аналог инкогнито-окон) в одном процессе Chrome.
+ * Включается свойством browserContexts=true для локального запуска chrome.
+ * <p>
+ * При первом обращении запускается общий браузер, затем для каждого драйвера через CDP создается
+ * отдельный контекст (Target.createBrowserContext) с вкладкой, к которой подключается собственный chromedriver.
+ * У контекстов раздельные cookies, localStorage и кэш, поэтому параллельные сценарии не влияют друг на друга,
+ * а память расходуется на одну копию браузера вместо нескольких.
+ * Опции запуска (аргументы, headless и т.д.) общие для всех контекстов и берутся у первого драйвера,
+ * собственным у каждого контекста может быть только прокси.
+ * Драйвер видит только вкладки своего контекста, при quit() контекст удаляется, общий браузер закрывается при завершении JVM.
+ * Если общий браузер упал или CDP-соединение с ним закрылось, при создании следующего контекста он запускается заново
+ */
+@Slf4j
+final class BrowserContextManager {
+
+    static final String BROWSER_CONTEXTS = "browserContexts";
+
+    private static WebDriver hostDriver;
+    private static String debuggerAddress;
+    private static ChromeDevToolsService browserDevTools;
+    private static boolean shutdownHookAdded;
+
+    private BrowserContextManager() {
+
+    }
+
+    /**
+     * Создает изолированный контекст в общем браузере и подключенный к его вкладке драйвер.
+     * Общий браузер запускается с capabilities первого драйвера, но без прокси,
+     * а прокси из capabilities каждого драйвера (например, BrowserMob прокси при -Dproxy=true)
+     * задается его контексту через Target.createBrowserContext
+     *
+     * @param capabilities capabilities драйвера
+     * @param hostFactory  создание общего браузера по capabilities, вызывается один раз
+     * @return драйвер, работающий только с вкладками своего контекста
+     */
+    static WebDriver createContextDriver(Capabilities capabilities, Function<DesiredCapabilities, WebDriver> hostFactory) {
+        DesiredCapabilities hostCapabilities = new DesiredCapabilities(capabilities);
+        hostCapabilities.setCapability(CapabilityType.PROXY, (Object) null);
+        org.openqa.selenium.Proxy proxy = org.openqa.selenium.Proxy.extractFrom(capabilities);
+        String contextId;
+        String targetId;
+        synchronized (BrowserContextManager.class) {
+            startHost(() -> hostFactory.apply(hostCapabilities));
+            Target target = browserDevTools.getTarget();
+            contextId = proxy != null && proxy.getHttpProxy() != null
+                    ? target.createBrowserContext(null, proxy.getHttpProxy(), proxy.getNoProxy())
+                    : target.createBrowserContext();
+            targetId = target.createTarget("about:blank", null, null, contextId, null, null, null);
+        }
+        try {
+            ChromeOptions options = new ChromeOptions();
+            options.setExperimentalOption("debuggerAddress", debuggerAddress);
+            ChromeDriver driver = new ChromeDriver(options);
+            String handle = driver.getWindowHandles().stream()
+                    .filter(windowHandle -> isHandleOf(windowHandle, targetId))
+                    .findFirst()
+                    .orElseThrow(() -> {
+                        driver.quit();
+                        return new WebDriverException("Не найдена вкладка " + targetId + " контекста браузера " + contextId);
+                    });
+            driver.switchTo().window(handle);
+            log.info("Создан контекст браузера " + contextId);
+            return wrap(driver, contextId);
+        } catch (RuntimeException e) {
+            disposeContext(contextId);
+            throw e;
+        }
+    }
+
+    private static void startHost(Supplier<WebDriver> hostFactory) {
+        if (hostDriver != null) {
+            if (isHostAlive()) {
+                return;
+            }
+            log.warn("Общий браузер недоступен, запускается новый");
+            stopHost();
+        }
+        WebDriver host = hostFactory.get();
+        String address = DevToolsConnector.getDebuggerAddress(((HasCapabilities) host).getCapabilities());
+        if (address == null) {
+            host.quit();
+            throw new WebDriverException("Браузер не предоставил debuggerAddress, контексты поддерживаются только для chrome");
+        }
+        debuggerAddress = address;
+        browserDevTools = DevToolsConnector.connect(DevToolsConnector.getBrowserWebSocketUri(debuggerAddress));
+        hostDriver = host;
+        if (!shutdownHookAdded) {
+            Runtime.getRuntime().addShutdownHook(new Thread(BrowserContextManager::stopHost, "akita-browser-contexts-shutdown"));
+            shutdownHookAdded = true;
+        }
+    }
+
+    /**
+     * Проверяет, что CDP-соединение с общим браузером открыто и браузер отвечает на команды
+     */
+    private static boolean isHostAlive() {
+        if (browserDevTools.isClosed()) {
+            return false;
+        }
+        try {
+            browserDevTools.getBrowser().getVersion();
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Общий браузер не отвечает: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static synchronized void stopHost() {
+        if (hostDriver == null) {
+            return;
+        }
+        try {
+            browserDevTools.close();
+        } catch (RuntimeException e) {
+            log.warn("Ошибка при закрытии CDP-соединения с общим браузером: " + e.getMessage());
+        }
+        try {
+            hostDriver.quit();
+        } catch (WebDriverException e) {
+            log.warn("Ошибка при закрытии общего браузера: " + e.getMessage());
+        }
+        hostDriver = null;
+        browserDevTools = null;
+        debuggerAddress = null;
+    }
+
+    private static synchronized void disposeContext(String contextId) {
+        if (browserDevTools == null) {
+            return;
+        }
+        try {
+            browserDevTools.getTarget().disposeBrowserContext(contextId);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось удалить контекст браузера " + contextId + ": " + e.getMessage());
+        }
+    }
+
+    private static synchronized Set<String> getContextTargets(String contextId) {
+        if (browserDevTools == null) {
+            throw new WebDriverException("Общий браузер контекста " + contextId + " закрыт");
+        }
+        return browserDevTools.getTarget().getTargets().stream()
+                .filter(target -> contextId.equals(target.getBrowserContextId()) && "page".equals(target.getType()))
+                .map(TargetInfo::getTargetId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * chromedriver использует id вкладки CDP в качестве дескриптора окна, в старых версиях - с префиксом CDwindow-
+     */
+    private static boolean isHandleOf(String handle, String targetId) {
+        return handle.toUpperCase().endsWith(targetId.toUpperCase());
+    }
+
+    /**
+     * Оборачивает драйвер: getWindowHandles() возвращает только вкладки контекста,
+     * quit() удаляет контекст вместе с его вкладками и отключает chromedriver, не закрывая общий браузер
+     */
+    private static WebDriver wrap(ChromeDriver driver, String contextId) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>(ClassUtils.getAllInterfaces(driver.getClass()));
+        interfaces.add(WrapsDriver.class);
+        AtomicBoolean closed = new AtomicBoolean();
+        return (WebDriver) Proxy.newProxyInstance(BrowserContextManager.class.getClassLoader(),
+                interfaces.toArray(new Class<?>[0]), (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "quit":
+                            if (closed.compareAndSet(false, true)) {
+                                DevToolsManager.close(driver);
+                                disposeContext(contextId);
+                                driver.quit();
+                            }
+                            return null;
+                        case "getWindowHandles":
+                            Set<String> targets = getContextTargets(contextId);
+                            return driver.getWindowHandles().stream()
+                                    .filter(handle -> targets.stream().anyMatch(target -> isHandleOf(handle, target)))
+                                    .collect(Collectors.toCollection(LinkedHashSet::new));
+                        case "getWrappedDriver":
+                            return driver;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "BrowserContextDriver(" + contextId + ")";
+                        default:
+                            try {
+                                return method.invoke(driver, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+}
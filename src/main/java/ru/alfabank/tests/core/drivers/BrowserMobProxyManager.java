@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import lombok.extern.slf4j.Slf4j;
+import net.lightbody.bmp.BrowserMobProxy;
+import net.lightbody.bmp.BrowserMobProxyServer;
+import net.lightbody.bmp.client.ClientUtil;
+import net.lightbody.bmp.proxy.CaptureType;
+import org.openqa.selenium.Proxy;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.remote.CapabilityType;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import ru.alfabank.tests.core.helpers.BlackList;
+import ru.alfabank.tests.core.helpers.StartupProfiler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.openqa.selenium.remote.CapabilityType.ACCEPT_SSL_CERTS;
+import static org.openqa.selenium.remote.CapabilityType.SUPPORTS_JAVASCRIPT;
+import static ru.alfabank.tests.core.drivers.CustomDriverProvider.NEW_HAR;
+import static ru.alfabank.tests.core.drivers.CustomDriverProvider.TRUST_ALL_SERVERS;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadProperty;
+
+/**
+ * Работа с BrowserMob прокси.
+ * Классы BrowserMob загружаются только при первом запуске браузера с -Dproxy=true.
+ * Каждый браузер получает собственный прокси на отдельном порту, поэтому параллельные сценарии не смешивают har и blacklist.
+ * Прокси живет столько же, сколько браузер: при включенном пуле сессий он переходит вместе с браузером
+ * от сценария к сценарию и останавливается, когда пул закрывает браузер, без пула - по завершении сценария
+ */
+@Slf4j
+final class BrowserMobProxyManager {
+
+    private static final Map<WebDriver, BrowserMobProxy> DRIVER_PROXIES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<BrowserMobProxy> CURRENT_PROXY = new ThreadLocal<>();
+
+    private BrowserMobProxyManager() {
+
+    }
+
+    /**
+     * Возвращает прокси браузера текущего сценария или null, если браузер запущен без прокси
+     */
+    static BrowserMobProxy getProxy() {
+        return CURRENT_PROXY.get();
+    }
+
+    /**
+     * Стартует новый прокси и создает браузер, работающий через него.
+     * har для прослушки указывается в application.properties
+     *
+     * @param capabilities   капибилити для драйвера, не изменяются
+     * @param applyBlacklist добавить ли в Blacklist прокси URL из файла blacklist
+     * @param factory        создание браузера по капибилити с настройками прокси
+     * @return драйвер, связанный с прокси
+     */
+    static WebDriver createDriver(DesiredCapabilities capabilities, boolean applyBlacklist,
+                                  Function<DesiredCapabilities, WebDriver> factory) {
+        BrowserMobProxy proxy = StartupProfiler.measure("CustomDriverProvider: создание BrowserMob прокси",
+                BrowserMobProxyServer::new);
+        proxy.setTrustAllServers(Boolean.parseBoolean(loadProperty(TRUST_ALL_SERVERS, "true")));
+        proxy.start();
+        try {
+            if (applyBlacklist) {
+                proxy.setBlacklist(new BlackList().getBlacklistEntries());
+            }
+            proxy.enableHarCaptureTypes(CaptureType.REQUEST_CONTENT, CaptureType.REQUEST_HEADERS, CaptureType.RESPONSE_CONTENT, CaptureType.RESPONSE_HEADERS);
+
+            Proxy seleniumProxy = ClientUtil.createSeleniumProxy(proxy);
+            DesiredCapabilities proxyCapabilities = new DesiredCapabilities(capabilities);
+            proxyCapabilities.setCapability(CapabilityType.PROXY, seleniumProxy);
+            proxyCapabilities.setCapability(ACCEPT_SSL_CERTS, Boolean.valueOf(loadProperty(ACCEPT_SSL_CERTS, "true")));
+            proxyCapabilities.setCapability(SUPPORTS_JAVASCRIPT, Boolean.valueOf(loadProperty(SUPPORTS_JAVASCRIPT, "true")));
+
+            WebDriver driver = factory.apply(proxyCapabilities);
+            DRIVER_PROXIES.put(driver, proxy);
+            return driver;
+        } catch (RuntimeException e) {
+            stop(proxy);
+            throw e;
+        }
+    }
+
+    /**
+     * Делает прокси браузера прокси текущего сценария и начинает в нем новый har
+     *
+     * @param driver драйвер, созданный через createDriver
+     */
+    static void select(WebDriver driver) {
+        BrowserMobProxy proxy = DRIVER_PROXIES.get(driver);
+        if (proxy != null) {
+            proxy.newHar(loadProperty(NEW_HAR));
+            CURRENT_PROXY.set(proxy);
+        }
+    }
+
+    /**
+     * Останавливает прокси браузера, вызывается при закрытии браузера
+     *
+     * @param driver драйвер, созданный через createDriver
+     */
+    static void stopProxy(WebDriver driver) {
+        BrowserMobProxy proxy = DRIVER_PROXIES.remove(driver);
+        if (proxy != null) {
+            stop(proxy);
+        }
+    }
+
+    /**
+     * Отвязывает прокси от текущего потока по завершении сценария
+     *
+     * @param stop остановить ли прокси: браузер сценария уже закрыт и прокси больше не нужен
+     */
+    static void release(boolean stop) {
+        BrowserMobProxy proxy = CURRENT_PROXY.get();
+        CURRENT_PROXY.remove();
+        if (proxy != null && stop) {
+            DRIVER_PROXIES.values().remove(proxy);
+            stop(proxy);
+        }
+    }
+
+    private static void stop(BrowserMobProxy proxy) {
+        try {
+            proxy.stop();
+        } catch (RuntimeException e) {
+            log.warn("Ошибка при остановке BrowserMob прокси: " + e.getMessage());
+        }
+    }
+}
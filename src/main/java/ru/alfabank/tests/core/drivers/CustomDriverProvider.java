@@ -12,30 +12,16 @@
  */
 package ru.alfabank.tests.core.drivers;
 
-import com.github.kklisura.cdt.protocol.commands.Fetch;
-import com.github.kklisura.cdt.protocol.types.fetch.RequestPattern;
-import com.github.kklisura.cdt.protocol.types.network.ErrorReason;
-import com.github.kklisura.cdt.services.ChromeDevToolsService;
-import com.github.kklisura.cdt.services.WebSocketService;
-import com.github.kklisura.cdt.services.config.ChromeDevToolsServiceConfiguration;
-import com.github.kklisura.cdt.services.exceptions.WebSocketServiceException;
-import com.github.kklisura.cdt.services.impl.ChromeDevToolsServiceImpl;
-import com.github.kklisura.cdt.services.impl.WebSocketServiceImpl;
-import com.github.kklisura.cdt.services.invocation.CommandInvocationHandler;
-import com.github.kklisura.cdt.services.utils.ProxyUtils;
-import io.github.bonigarcia.wdm.WebDriverManager;
+import io.github.bonigarcia.wdm.config.DriverManagerType;
 import net.lightbody.bmp.BrowserMobProxy;
 import com.codeborne.selenide.Configuration;
 import com.codeborne.selenide.WebDriverProvider;
 import lombok.extern.slf4j.Slf4j;
-import net.lightbody.bmp.BrowserMobProxyServer;
-import net.lightbody.bmp.client.ClientUtil;
-import net.lightbody.bmp.proxy.BlacklistEntry;
-import net.lightbody.bmp.proxy.CaptureType;
 import org.jetbrains.annotations.NotNull;
 import org.openqa.selenium.*;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.chromium.HasCdp;
 import org.openqa.selenium.edge.EdgeDriver;
 import org.openqa.selenium.edge.EdgeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
@@ -50,22 +36,21 @@ import org.openqa.selenium.remote.LocalFileDetector;
 import org.openqa.selenium.remote.RemoteWebDriver;
 import org.openqa.selenium.safari.SafariDriver;
 import org.openqa.selenium.safari.SafariOptions;
+import ru.alfabank.alfatest.cucumber.api.AkitaEnvironment;
 import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
-import ru.alfabank.tests.core.helpers.BlackList;
 import ru.alfabank.tests.core.helpers.PropertyLoader;
+import ru.alfabank.tests.core.helpers.StartupProfiler;
 
-import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.codeborne.selenide.Browsers.*;
 import static org.openqa.selenium.remote.CapabilityType.*;
-import static ru.alfabank.tests.core.helpers.PropertyLoader.loadProperty;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadPropertyInt;
 import static ru.alfabank.tests.core.helpers.PropertyLoader.loadSystemPropertyOrDefault;
 
 /**
@@ -86,6 +71,18 @@ import static ru.alfabank.tests.core.helpers.PropertyLoader.loadSystemPropertyOr
  * Если selenoidSessionName не указан - имя сессии в Selenoid UI отображаться не будет
  * С указанием устройства, на котором будем эмулироваться запуск мобильного chrome браузера (-Ddevice=iPhone 6)
  * Если указан параметр headless, то браузеры firefox и chrome будут запускаться без GUI (-Dheadless=true)
+ * Если указан параметр webDriverPool, браузеры переиспользуются между сценариями (-DwebDriverPool=true), см. WebDriverPool.
+ * Параметр webDriverPoolWarmSize задает количество браузеров, заранее запускаемых пулом в фоне (-DwebDriverPoolWarmSize=2)
+ * Если указан параметр browserContexts, локальные сценарии chrome выполняются в изолированных контекстах
+ * одного процесса браузера (-DbrowserContexts=true), см. BrowserContextManager
+ * Запросы, подходящие под шаблоны abortedNetworkRequestsList, блокируются через CDP как в удаленных сессиях,
+ * так и в локально запущенных chrome и edge (-DabortedNetworkRequestsList=*analytics*,*.ads.js)
+ * Параметры blockedResourceTypes и blockedResourceMaxSize задают профиль блокировки ресурсов по типу и размеру
+ * (-DblockedResourceTypes=Image,Font,Media), см. ResourceTypeBlocker
+ * Драйверы локальных браузеров берутся из кэша driverBinaryCacheDir, версия определяется один раз за запуск
+ * (-DdriverBinaryCacheOffline=true - без обращения к сети), см. DriverBinaryCache
+ * Параметр chromeProfileTemplate задает подготовленный профиль, копия которого используется каждым локальным chrome
+ * (-DchromeProfileTemplate=/opt/akita/chrome-profile), см. ProfileTemplate
  */
 @Slf4j
 public class CustomDriverProvider implements WebDriverProvider {
@@ -101,36 +98,39 @@ public class CustomDriverProvider implements WebDriverProvider {
     public static final String NEW_HAR = "har";
     public static final String SELENOID = "selenoid";
     public static final String ABORTED_NETWORK_REQUESTS_LIST_PROPERTY = "abortedNetworkRequestsList";
+    public static final String WEB_DRIVER_POOL_WARM_SIZE = "webDriverPoolWarmSize";
+
+    /**
+     * Шаблоны url блокируемых запросов из abortedNetworkRequestsList, разбираются один раз на все сессии
+     */
+    static final List<String> ABORTED_NETWORK_REQUESTS = Collections.unmodifiableList(
+            Arrays.stream(loadSystemPropertyOrDefault(ABORTED_NETWORK_REQUESTS_LIST_PROPERTY, "")
+                    .replace(" ", "")
+                    .split(","))
+                    .filter(request -> !request.isEmpty())
+                    .collect(Collectors.toList()));
     private static final String SELENOID_SESSION_NAME = "selenoidSessionName";
     public static final int DEFAULT_WIDTH = 1920;
     public static final int DEFAULT_HEIGHT = 1080;
-    private final List<String> abortedNetworkRequestsList = new ArrayList<>();
 
-    private static final BrowserMobProxy PROXY = new BrowserMobProxyServer();
     private final String[] options = loadSystemPropertyOrDefault("options", "").split(" ");
 
+    /**
+     * Возвращает BrowserMob прокси браузера текущего сценария или null, если браузер запущен без -Dproxy=true
+     */
     public static BrowserMobProxy getProxy() {
-        return PROXY;
+        return BrowserMobProxyManager.getProxy();
     }
 
     /**
-     * если установлен -Dproxy=true стартует прокси
-     * har для прослушки указывается в application.properties
-     *
-     * @param capabilities Капибилити для драйвера
+     * Отвязывает BrowserMob прокси от потока по завершении сценария.
+     * Без пула сессий браузер сценария к этому моменту закрыт, поэтому его прокси останавливается и освобождает порт.
+     * Прокси браузера из пула останавливается, когда пул закрывает браузер
      */
-    private void enableProxy(DesiredCapabilities capabilities) {
-        PROXY.setTrustAllServers(Boolean.parseBoolean(loadProperty(TRUST_ALL_SERVERS, "true")));
-        PROXY.start();
-
-        Proxy seleniumProxy = ClientUtil.createSeleniumProxy(PROXY);
-
-        capabilities.setCapability(CapabilityType.PROXY, seleniumProxy);
-        capabilities.setCapability(ACCEPT_SSL_CERTS, Boolean.valueOf(loadProperty(ACCEPT_SSL_CERTS, "true")));
-        capabilities.setCapability(SUPPORTS_JAVASCRIPT, Boolean.valueOf(loadProperty(SUPPORTS_JAVASCRIPT, "true")));
-
-        PROXY.enableHarCaptureTypes(CaptureType.REQUEST_CONTENT, CaptureType.REQUEST_HEADERS, CaptureType.RESPONSE_CONTENT, CaptureType.RESPONSE_HEADERS);
-        PROXY.newHar(loadProperty(NEW_HAR));
+    public static void releaseProxy() {
+        if (loadSystemPropertyOrDefault(CapabilityType.PROXY, false)) {
+            BrowserMobProxyManager.release(!WebDriverPool.isEnabled());
+        }
     }
 
     @NotNull
@@ -141,37 +141,82 @@ public class CustomDriverProvider implements WebDriverProvider {
                 loadSystemPropertyOrDefault(WINDOW_HEIGHT, DEFAULT_HEIGHT));
         String expectedBrowser = loadSystemPropertyOrDefault(BROWSER, capabilities.getBrowserName());
         String remoteUrl = loadSystemPropertyOrDefault(REMOTE_URL, LOCAL);
-        BlackList blackList = new BlackList();
         boolean isProxyMode = loadSystemPropertyOrDefault(CapabilityType.PROXY, false);
-        if (isProxyMode) {
-            enableProxy(desiredCapabilities);
-        }
 
         log.info("remoteUrl=" + remoteUrl + " expectedBrowser= " + expectedBrowser + " BROWSER_VERSION=" + System.getProperty(CapabilityType.BROWSER_VERSION));
 
+        // фабрика вызывается и из потоков прогрева пула, а методы get*Options изменяют capabilities,
+        // поэтому каждый драйвер создается со своей копией
+        Supplier<WebDriver> driverFactory = () -> StartupProfiler.measure(
+                "CustomDriverProvider: первое создание драйвера " + expectedBrowser.toLowerCase(),
+                () -> isProxyMode
+                        ? BrowserMobProxyManager.createDriver(new DesiredCapabilities(desiredCapabilities), !LOCAL.equalsIgnoreCase(remoteUrl),
+                        proxyCapabilities -> createDriver(expectedBrowser, remoteUrl, proxyCapabilities))
+                        : createDriver(expectedBrowser, remoteUrl, new DesiredCapabilities(desiredCapabilities)));
+        WebDriver driver;
+        if (WebDriverPool.isEnabled()) {
+            String poolKey = String.join("|", expectedBrowser.toLowerCase(), remoteUrl, String.valueOf(isProxyMode));
+            WebDriverPool pool = WebDriverPool.getInstance();
+            driver = pool.acquire(poolKey, driverFactory);
+            pool.warmUp(poolKey, loadPropertyInt(WEB_DRIVER_POOL_WARM_SIZE, 0), driverFactory);
+        } else {
+            driver = driverFactory.get();
+        }
+        if (isProxyMode) {
+            BrowserMobProxyManager.select(WebDriverPool.isEnabled() ? ((WrapsDriver) driver).getWrappedDriver() : driver);
+        }
+        if (ResourceTypeBlocker.isConfigured()) {
+            ResourceTypeBlocker.attach(driver, !hasScenarioTag(ResourceTypeBlocker.LOAD_ALL_RESOURCES_TAG));
+        }
+        return driver;
+    }
+
+    /**
+     * Создает локальный или удаленный драйвер для заданного браузера
+     */
+    private WebDriver createDriver(String expectedBrowser, String remoteUrl, DesiredCapabilities desiredCapabilities) {
         switch (expectedBrowser.toLowerCase()) {
             case (FIREFOX):
-                return LOCAL.equalsIgnoreCase(remoteUrl) ? createFirefoxDriver(desiredCapabilities) : getRemoteDriver(getFirefoxDriverOptions(desiredCapabilities), remoteUrl, blackList.getBlacklistEntries());
+                return LOCAL.equalsIgnoreCase(remoteUrl) ? createFirefoxDriver(desiredCapabilities) : getRemoteDriver(getFirefoxDriverOptions(desiredCapabilities), remoteUrl);
             case (MOBILE_DRIVER):
-                return LOCAL.equalsIgnoreCase(remoteUrl) ? new ChromeDriver(getMobileChromeOptions(desiredCapabilities)) : getRemoteDriver(getMobileChromeOptions(desiredCapabilities), remoteUrl, blackList.getBlacklistEntries());
+                return LOCAL.equalsIgnoreCase(remoteUrl) ? blockAbortedNetworkRequests(createMobileChromeDriver(desiredCapabilities)) : getRemoteDriver(getMobileChromeOptions(desiredCapabilities), remoteUrl);
             case (OPERA):
-                return LOCAL.equalsIgnoreCase(remoteUrl) ? createOperaDriver(desiredCapabilities) : getRemoteDriver(getOperaRemoteDriverOptions(desiredCapabilities), remoteUrl, blackList.getBlacklistEntries());
+                return LOCAL.equalsIgnoreCase(remoteUrl) ? createOperaDriver(desiredCapabilities) : getRemoteDriver(getOperaRemoteDriverOptions(desiredCapabilities), remoteUrl);
             case (SAFARI):
-                return LOCAL.equalsIgnoreCase(remoteUrl) ? createSafariDriver(desiredCapabilities) : getRemoteDriver(getSafariDriverOptions(desiredCapabilities), remoteUrl, blackList.getBlacklistEntries());
+                return LOCAL.equalsIgnoreCase(remoteUrl) ? createSafariDriver(desiredCapabilities) : getRemoteDriver(getSafariDriverOptions(desiredCapabilities), remoteUrl);
             case (INTERNET_EXPLORER):
             case (IE):
-                return LOCAL.equalsIgnoreCase(remoteUrl) ? createIEDriver(desiredCapabilities) : getRemoteDriver(getIEDriverOptions(desiredCapabilities), remoteUrl, blackList.getBlacklistEntries());
+                return LOCAL.equalsIgnoreCase(remoteUrl) ? createIEDriver(desiredCapabilities) : getRemoteDriver(getIEDriverOptions(desiredCapabilities), remoteUrl);
             case (EDGE):
-                return LOCAL.equalsIgnoreCase(remoteUrl) ? createEdgeDriver(desiredCapabilities) : getRemoteDriver(getEdgeDriverOptions(desiredCapabilities), remoteUrl, blackList.getBlacklistEntries());
+                return LOCAL.equalsIgnoreCase(remoteUrl) ? blockAbortedNetworkRequests(createEdgeDriver(desiredCapabilities)) : getRemoteDriver(getEdgeDriverOptions(desiredCapabilities), remoteUrl);
             default:
-                return LOCAL.equalsIgnoreCase(remoteUrl) ? createChromeDriver(desiredCapabilities) : getRemoteDriver(getChromeDriverOptions(desiredCapabilities), remoteUrl, blackList.getBlacklistEntries());
+                return LOCAL.equalsIgnoreCase(remoteUrl) ? blockAbortedNetworkRequests(createChromeDriver(desiredCapabilities)) : getRemoteDriver(getChromeDriverOptions(desiredCapabilities), remoteUrl);
 
         }
     }
 
+    /**
+     * Блокирует запросы из abortedNetworkRequestsList в локально запущенном chrome или edge
+     *
+     * @param driver - проинициализированный локальный драйвер
+     * @return тот же драйвер
+     */
+    private static WebDriver blockAbortedNetworkRequests(WebDriver driver) {
+        if (!ABORTED_NETWORK_REQUESTS.isEmpty() && driver instanceof HasCdp) {
+            try {
+                DevToolsRequestBlocker.setAbortedNetworkRequests(driver);
+            } catch (RuntimeException e) {
+                driver.quit();
+                throw e;
+            }
+        }
+        return driver;
+    }
+
     /**
      * Задает capabilities для запуска Remote драйвера для Selenoid
      * Определяет нужно ли блокировть запросы браузера через devTools
+     * Сессия создается через RemoteSessionScheduler, который ограничивает количество одновременных сессий на гриде
      *
      * @param capabilities - capabilities для установленного браузера
      * @param remoteUrl    - url для запуска тестов, например http://remoteIP:4444/wd/hub
@@ -186,20 +231,31 @@ public class CustomDriverProvider implements WebDriverProvider {
                     loadSystemPropertyOrDefault(WINDOW_HEIGHT, DEFAULT_HEIGHT)));
             String sessionName = loadSystemPropertyOrDefault(SELENOID_SESSION_NAME, "");
             if (!sessionName.isEmpty()) {
-                capabilities.setCapability("name", String.format("%s %s", sessionName, AkitaScenario.getInstance().getScenario().getName()));
+                capabilities.setCapability("name", getSessionName(sessionName));
             }
         }
         try {
-            RemoteWebDriver remoteWebDriver = new RemoteWebDriver(
-                    URI.create(remoteUrl).toURL(),
-                    capabilities
-            );
+            URL gridUrl = URI.create(remoteUrl).toURL();
+            RemoteWebDriver remoteWebDriver = RemoteSessionScheduler.getInstance().createSession(remoteUrl,
+                    slot -> new RemoteWebDriver(gridUrl, capabilities) {
+                        @Override
+                        public void quit() {
+                            try {
+                                DevToolsManager.close(this);
+                                super.quit();
+                            } finally {
+                                slot.release();
+                            }
+                        }
+                    });
             remoteWebDriver.setFileDetector(new LocalFileDetector());
-            abortedNetworkRequestsList.addAll(Arrays.asList(loadSystemPropertyOrDefault(ABORTED_NETWORK_REQUESTS_LIST_PROPERTY, "")
-                    .replace(" ", "")
-                    .split(",")));
-            if(!abortedNetworkRequestsList.isEmpty()) {
-                setAbortedNetworkRequests(remoteWebDriver, remoteUrl, abortedNetworkRequestsList);
+            if (!ABORTED_NETWORK_REQUESTS.isEmpty() && DevToolsManager.isSupported(remoteWebDriver)) {
+                try {
+                    DevToolsRequestBlocker.setAbortedNetworkRequests(remoteWebDriver);
+                } catch (RuntimeException e) {
+                    remoteWebDriver.quit();
+                    throw e;
+                }
             }
             return remoteWebDriver;
         } catch (MalformedURLException e) {
@@ -208,79 +264,24 @@ public class CustomDriverProvider implements WebDriverProvider {
     }
 
     /**
-     * Получает доступ к devTools через webSocket и передает запросы которые нужно блокировать
-     * @param remoteWebDriver - проинициализированный драйвер
-     * @param remoteUrl - url для запуска тестов, например http://remoteIP:4444/wd/hub
+     * Формирует имя сессии в Selenoid UI из selenoidSessionName и имени текущего сценария.
+     * Браузеры, заранее запускаемые пулом в фоновом потоке, не связаны со сценарием и получают только selenoidSessionName
      */
-
-    private static void setAbortedNetworkRequests(RemoteWebDriver remoteWebDriver, String remoteUrl, List<String> abortedNetworkRequestsList) {
-        ChromeDevToolsService devTools = getDevTools(remoteWebDriver, remoteUrl);
-        log.info("---------------Aborted Requests---------------------");
-        abortedNetworkRequestsList.forEach(log::info);
-        Fetch fetch = devTools.getFetch();
-        fetch.onRequestPaused(
-                e -> fetch.failRequest(e.getRequestId(), ErrorReason.FAILED)
-        );
-        List<RequestPattern> requestPatternList = new ArrayList<>();
-        abortedNetworkRequestsList.forEach(request -> {
-            RequestPattern requestPattern = new RequestPattern();
-            requestPattern.setUrlPattern(request);
-            requestPatternList.add(requestPattern);
-        });
-        fetch.enable(requestPatternList, true);
+    private static String getSessionName(String sessionName) {
+        AkitaEnvironment environment = AkitaScenario.getInstance().getEnvironment();
+        if (environment == null || environment.getScenario() == null) {
+            return sessionName;
+        }
+        return String.format("%s %s", sessionName, environment.getScenario().getName());
     }
 
     /**
-     * Получает доступ к devTools через webSocket
-     * @param remoteWebDriver - проинициализированный драйвер
-     * @param remoteUrl - url для запуска тестов, например http://remoteIP:4444/wd/hub
-     * @return - возвращает экземпляр ChromeDevToolsService для дальнейшей работы с ним
+     * Проверяет, отмечен ли текущий сценарий тегом
      */
-
-    private static ChromeDevToolsService getDevTools(RemoteWebDriver remoteWebDriver, String remoteUrl) {
-        ChromeDevToolsService devtools;
-        WebSocketService webSocketService = null;
-
-        Pattern pattern = Pattern.compile("([a-zA-Z0-9-]+\\.)*[a-zA-Z0-9-]+:[0-9]+");
-        Matcher matcher = pattern.matcher(remoteUrl);
-        if(matcher.find()) {
-            try {
-                webSocketService = WebSocketServiceImpl.create(new URI(String.format("ws://%s/devtools/%s/page", matcher.group(), remoteWebDriver.getSessionId())));
-            } catch (WebSocketServiceException | URISyntaxException e) {
-                e.printStackTrace();
-            }
-        } else throw new InvalidArgumentException("something wrong with remoteUrl, please check your gradle.properties file. Your remoteUrl: " + remoteUrl);
-        CommandInvocationHandler commandInvocationHandler = new CommandInvocationHandler();
-        Map<Method, Object> commandsCache = new ConcurrentHashMap<>();
-        devtools =
-                ProxyUtils.createProxyFromAbstract(
-                        ChromeDevToolsServiceImpl.class,
-                        new Class[] { WebSocketService.class, ChromeDevToolsServiceConfiguration.class },
-                        new Object[] { webSocketService, new ChromeDevToolsServiceConfiguration() },
-                        (unused, method, args) ->
-                                commandsCache.computeIfAbsent(
-                                        method,
-                                        key -> {
-                                            Class<?> returnType = method.getReturnType();
-                                            return ProxyUtils.createProxy(returnType, commandInvocationHandler);
-                                        }));
-        commandInvocationHandler.setChromeDevToolsService(devtools);
-        return devtools;
-    }
-
-    /**
-     * Задает capabilities для запуска Remote драйвера для Selenoid
-     * со списком соответствующих URL, которые добавляются в Blacklist
-     * URL для добавления в Blacklist могут быть указаны в формате регулярных выражений
-     *
-     * @param capabilities Капибилити для драйвера
-     * @param remoteUrl Ссылка для удаленного запуска
-     * @param blacklistEntries - список url для добавления в Blacklist
-     * @return WebDriver
-     */
-    private WebDriver getRemoteDriver(MutableCapabilities capabilities, String remoteUrl, List<BlacklistEntry> blacklistEntries) {
-        PROXY.setBlacklist(blacklistEntries);
-        return getRemoteDriver(capabilities, remoteUrl);
+    private static boolean hasScenarioTag(String tag) {
+        AkitaEnvironment environment = AkitaScenario.getInstance().getEnvironment();
+        return environment != null && environment.getScenario() != null
+                && environment.getScenario().getSourceTagNames().contains(tag);
     }
 
     /**
@@ -417,8 +418,30 @@ public class CustomDriverProvider implements WebDriverProvider {
      * @return WebDriver
      */
     private WebDriver createChromeDriver(DesiredCapabilities capabilities) {
-        WebDriverManager.chromedriver().setup();
-        return new ChromeDriver(getChromeDriverOptions(capabilities));
+        if (loadSystemPropertyOrDefault(BrowserContextManager.BROWSER_CONTEXTS, false)) {
+            return BrowserContextManager.createContextDriver(capabilities,
+                    hostCapabilities -> DriverBinaryCache.getInstance().createDriver(DriverManagerType.CHROME,
+                            () -> newChromeDriver(getChromeDriverOptions(hostCapabilities))));
+        }
+        return DriverBinaryCache.getInstance().createDriver(DriverManagerType.CHROME,
+                () -> newChromeDriver(getChromeDriverOptions(capabilities)));
+    }
+
+    /**
+     * Запускает локальный chrome, при заданном chromeProfileTemplate - с копией подготовленного профиля
+     */
+    private static ChromeDriver newChromeDriver(ChromeOptions chromeOptions) {
+        return ProfileTemplate.isConfigured() ? ProfileTemplate.createChromeDriver(chromeOptions) : new ChromeDriver(chromeOptions);
+    }
+
+    /**
+     * Создает экземпляр ChromeDriver, эмулирующий мобильное устройство
+     *
+     * @return WebDriver
+     */
+    private WebDriver createMobileChromeDriver(DesiredCapabilities capabilities) {
+        return DriverBinaryCache.getInstance().createDriver(DriverManagerType.CHROME,
+                () -> newChromeDriver(getMobileChromeOptions(capabilities)));
     }
 
     /**
@@ -427,8 +450,8 @@ public class CustomDriverProvider implements WebDriverProvider {
      * @return WebDriver
      */
     private WebDriver createFirefoxDriver(DesiredCapabilities capabilities) {
-        WebDriverManager.firefoxdriver().setup();
-        return new FirefoxDriver(getFirefoxDriverOptions(capabilities));
+        return DriverBinaryCache.getInstance().createDriver(DriverManagerType.FIREFOX,
+                () -> new FirefoxDriver(getFirefoxDriverOptions(capabilities)));
     }
 
     /**
@@ -437,8 +460,8 @@ public class CustomDriverProvider implements WebDriverProvider {
      * @return WebDriver
      */
     private WebDriver createOperaDriver(DesiredCapabilities capabilities) {
-        WebDriverManager.operadriver().setup();
-        return new OperaDriver(getOperaDriverOptions(capabilities));
+        return DriverBinaryCache.getInstance().createDriver(DriverManagerType.OPERA,
+                () -> new OperaDriver(getOperaDriverOptions(capabilities)));
     }
 
     /**
@@ -447,8 +470,8 @@ public class CustomDriverProvider implements WebDriverProvider {
      * @return WebDriver
      */
     private WebDriver createIEDriver(DesiredCapabilities capabilities) {
-        WebDriverManager.iedriver().setup();
-        return new InternetExplorerDriver(getIEDriverOptions(capabilities));
+        return DriverBinaryCache.getInstance().createDriver(DriverManagerType.IEXPLORER,
+                () -> new InternetExplorerDriver(getIEDriverOptions(capabilities)));
     }
 
     /**
@@ -457,17 +480,18 @@ public class CustomDriverProvider implements WebDriverProvider {
      * @return WebDriver
      */
     private WebDriver createEdgeDriver(DesiredCapabilities capabilities) {
-        WebDriverManager.edgedriver().setup();
-        return new EdgeDriver(getEdgeDriverOptions(capabilities));
+        return DriverBinaryCache.getInstance().createDriver(DriverManagerType.EDGE,
+                () -> new EdgeDriver(getEdgeDriverOptions(capabilities)));
     }
 
     /**
-     * Создает экземпляр SafariDriver с переданными capabilities и window dimensions
+     * Создает экземпляр SafariDriver с переданными capabilities и window dimensions.
+     * safaridriver входит в состав macOS (/usr/bin/safaridriver) и находится Selenium самостоятельно,
+     * поэтому через WebDriverManager и кэш драйверов не загружается
      *
      * @return WebDriver
      */
     private WebDriver createSafariDriver(DesiredCapabilities capabilities) {
-        WebDriverManager.safaridriver().setup();
         return new SafariDriver(getSafariDriverOptions(capabilities));
     }
 
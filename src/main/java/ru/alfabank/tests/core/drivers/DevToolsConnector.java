@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import com.github.kklisura.cdt.services.ChromeDevToolsService;
+import com.github.kklisura.cdt.services.WebSocketService;
+import com.github.kklisura.cdt.services.config.ChromeDevToolsServiceConfiguration;
+import com.github.kklisura.cdt.services.exceptions.WebSocketServiceException;
+import com.github.kklisura.cdt.services.impl.ChromeDevToolsServiceImpl;
+import com.github.kklisura.cdt.services.impl.WebSocketServiceImpl;
+import com.github.kklisura.cdt.services.invocation.CommandInvocationHandler;
+import com.github.kklisura.cdt.services.utils.ProxyUtils;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.InvalidArgumentException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.SessionId;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Подключение к Chrome DevTools Protocol по webSocket адресу
+ */
+final class DevToolsConnector {
+
+    private static final String[] BROWSER_OPTIONS_CAPABILITIES = {"goog:chromeOptions", "ms:edgeOptions"};
+
+    private DevToolsConnector() {
+
+    }
+
+    /**
+     * Открывает соединение с devTools
+     * @param webSocketUri - webSocket адрес, например ws://host:port/devtools/browser/id
+     * @return - возвращает экземпляр ChromeDevToolsService для дальнейшей работы с ним
+     */
+    static ChromeDevToolsService connect(URI webSocketUri) {
+        WebSocketService webSocketService;
+        try {
+            webSocketService = WebSocketServiceImpl.create(webSocketUri);
+        } catch (WebSocketServiceException e) {
+            throw new WebDriverException("Не удалось подключиться к devTools по адресу " + webSocketUri, e);
+        }
+        CommandInvocationHandler commandInvocationHandler = new CommandInvocationHandler();
+        Map<Method, Object> commandsCache = new ConcurrentHashMap<>();
+        ChromeDevToolsService devtools =
+                ProxyUtils.createProxyFromAbstract(
+                        ChromeDevToolsServiceImpl.class,
+                        new Class[] { WebSocketService.class, ChromeDevToolsServiceConfiguration.class },
+                        new Object[] { webSocketService, new ChromeDevToolsServiceConfiguration() },
+                        (unused, method, args) ->
+                                commandsCache.computeIfAbsent(
+                                        method,
+                                        key -> {
+                                            Class<?> returnType = method.getReturnType();
+                                            return ProxyUtils.createProxy(returnType, commandInvocationHandler);
+                                        }));
+        commandInvocationHandler.setChromeDevToolsService(devtools);
+        return devtools;
+    }
+
+    /**
+     * Возвращает адрес отладки локально запущенного chrome или edge из capabilities сессии
+     * @param capabilities - capabilities созданной сессии
+     * @return - адрес вида localhost:port или null, если браузер его не предоставил
+     */
+    static String getDebuggerAddress(Capabilities capabilities) {
+        for (String capability : BROWSER_OPTIONS_CAPABILITIES) {
+            Object options = capabilities.getCapability(capability);
+            if (options instanceof Map && ((Map<?, ?>) options).get("debuggerAddress") != null) {
+                return ((Map<?, ?>) options).get("debuggerAddress").toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Получает webSocket адрес браузера из http://debuggerAddress/json/version
+     */
+    static URI getBrowserWebSocketUri(String debuggerAddress) {
+        JsonObject version = readJson("http://" + debuggerAddress + "/json/version").getAsJsonObject();
+        return URI.create(version.get("webSocketDebuggerUrl").getAsString());
+    }
+
+    /**
+     * Получает webSocket адрес вкладки из http://debuggerAddress/json/list.
+     * chromedriver использует id вкладки в качестве дескриптора окна, в старых версиях - с префиксом CDwindow-
+     * @param windowHandle - дескриптор окна драйвера
+     */
+    static URI getPageWebSocketUri(String debuggerAddress, String windowHandle) {
+        for (JsonElement target : readJson("http://" + debuggerAddress + "/json/list").getAsJsonArray()) {
+            JsonObject targetInfo = target.getAsJsonObject();
+            if (windowHandle.toUpperCase().endsWith(targetInfo.get("id").getAsString().toUpperCase())
+                    && targetInfo.has("webSocketDebuggerUrl")) {
+                return URI.create(targetInfo.get("webSocketDebuggerUrl").getAsString());
+            }
+        }
+        throw new WebDriverException("Не найдена вкладка " + windowHandle + " по адресу " + debuggerAddress);
+    }
+
+    /**
+     * Формирует webSocket адрес devTools сессии Selenoid
+     * @param remoteUrl - url для запуска тестов, например http://remoteIP:4444/wd/hub
+     * @param sessionId - идентификатор удаленной сессии
+     */
+    static URI getRemotePageWebSocketUri(String remoteUrl, SessionId sessionId) {
+        URI uri;
+        try {
+            uri = URI.create(remoteUrl.trim());
+        } catch (IllegalArgumentException e) {
+            uri = null;
+        }
+        if (uri == null || uri.getHost() == null) {
+            throw new InvalidArgumentException("something wrong with remoteUrl, please check your gradle.properties file. Your remoteUrl: " + remoteUrl);
+        }
+        int port = uri.getPort() != -1 ? uri.getPort() : "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        String scheme = "https".equalsIgnoreCase(uri.getScheme()) ? "wss" : "ws";
+        return URI.create(String.format("%s://%s:%d/devtools/%s/page", scheme, uri.getHost(), port, sessionId));
+    }
+
+    private static JsonElement readJson(String url) {
+        try (InputStream stream = new URL(url).openStream()) {
+            return JsonParser.parseReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new WebDriverException("Не удалось получить данные devTools по адресу " + url, e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import com.github.kklisura.cdt.services.ChromeDevToolsService;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import static ru.alfabank.tests.core.drivers.CustomDriverProvider.LOCAL;
+import static ru.alfabank.tests.core.drivers.CustomDriverProvider.REMOTE_URL;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadSystemPropertyOrDefault;
+
+/**
+ * Клиент Chrome DevTools Protocol, общий для всех возможностей фреймворка, работающих через CDP
+ * (блокировка запросов и ресурсов, метрики, эмуляция, загрузки).
+ * <p>
+ * На каждую сессию браузера открывается одно webSocket соединение, которое переиспользуется до завершения сессии.
+ * Для локальных chrome и edge соединение открывается к вкладке по debuggerAddress,
+ * для удаленных - через devTools Selenoid по адресу remoteUrl.
+ * Соединение закрывается при вызове close(), при завершении JVM,
+ * а закрытое браузером соединение при следующем обращении открывается заново.
+ * Независимые команды можно отправить в одно соединение, не дожидаясь ответа на каждую (см. pipeline)
+ */
+@Slf4j
+public final class DevToolsManager {
+
+    private static final Map<WebDriver, ChromeDevToolsService> CONNECTIONS = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final ExecutorService PIPELINE_EXECUTOR = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "akita-devtools-pipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DevToolsManager::closeAll, "akita-devtools-shutdown"));
+    }
+
+    private DevToolsManager() {
+
+    }
+
+    /**
+     * Проверяет, поддерживает ли браузер CDP (chrome и edge)
+     *
+     * @param driver драйвер, в том числе обертка пула
+     */
+    public static boolean isSupported(WebDriver driver) {
+        WebDriver rawDriver = unwrap(driver);
+        if (!(rawDriver instanceof HasCapabilities)) {
+            return false;
+        }
+        String browserName = ((HasCapabilities) rawDriver).getCapabilities().getBrowserName().toLowerCase();
+        return browserName.contains("chrome") || browserName.contains("edge");
+    }
+
+    /**
+     * Возвращает соединение с devTools сессии, при первом обращении соединение открывается
+     *
+     * @param driver драйвер, в том числе обертка пула
+     * @return соединение, общее для всех обращений к этой сессии
+     */
+    public static ChromeDevToolsService getDevTools(WebDriver driver) {
+        WebDriver rawDriver = unwrap(driver);
+        synchronized (CONNECTIONS) {
+            ChromeDevToolsService devTools = CONNECTIONS.get(rawDriver);
+            if (devTools == null || devTools.isClosed()) {
+                devTools = DevToolsConnector.connect(getWebSocketUri(rawDriver));
+                CONNECTIONS.put(rawDriver, devTools);
+            }
+            return devTools;
+        }
+    }
+
+    /**
+     * Выполняет независимые команды через одно соединение сессии, не дожидаясь ответа на каждую:
+     * команды отправляются одновременно, метод возвращается после получения всех ответов.
+     * Порядок выполнения команд не гарантируется
+     *
+     * @param driver   драйвер, в том числе обертка пула
+     * @param commands команды devTools
+     */
+    @SafeVarargs
+    public static void pipeline(WebDriver driver, Consumer<ChromeDevToolsService>... commands) {
+        pipeline(getDevTools(driver), commands);
+    }
+
+    /**
+     * Выполняет независимые команды через заданное соединение, не дожидаясь ответа на каждую
+     *
+     * @param devTools соединение с devTools
+     * @param commands команды devTools
+     * @throws WebDriverException если хотя бы одна команда завершилась ошибкой
+     */
+    @SafeVarargs
+    public static void pipeline(ChromeDevToolsService devTools, Consumer<ChromeDevToolsService>... commands) {
+        List<CompletableFuture<Void>> responses = new ArrayList<>();
+        for (Consumer<ChromeDevToolsService> command : commands) {
+            responses.add(CompletableFuture.runAsync(() -> command.accept(devTools), PIPELINE_EXECUTOR));
+        }
+        try {
+            CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof WebDriverException) {
+                throw (WebDriverException) e.getCause();
+            }
+            throw new WebDriverException("Ошибка выполнения команды devTools", e.getCause());
+        }
+    }
+
+    /**
+     * Закрывает соединение с devTools сессии, вызывается перед завершением сессии
+     *
+     * @param driver драйвер, в том числе обертка пула
+     */
+    public static void close(WebDriver driver) {
+        close(CONNECTIONS.remove(unwrap(driver)));
+    }
+
+    private static void closeAll() {
+        List<ChromeDevToolsService> connections;
+        synchronized (CONNECTIONS) {
+            connections = new ArrayList<>(CONNECTIONS.values());
+            CONNECTIONS.clear();
+        }
+        connections.forEach(DevToolsManager::close);
+    }
+
+    private static void close(ChromeDevToolsService devTools) {
+        if (devTools == null || devTools.isClosed()) {
+            return;
+        }
+        try {
+            devTools.close();
+        } catch (RuntimeException e) {
+            log.warn("Ошибка при закрытии соединения с devTools: " + e.getMessage());
+        }
+    }
+
+    private static URI getWebSocketUri(WebDriver driver) {
+        String debuggerAddress = DevToolsConnector.getDebuggerAddress(((HasCapabilities) driver).getCapabilities());
+        String remoteUrl = loadSystemPropertyOrDefault(REMOTE_URL, LOCAL);
+        if (LOCAL.equalsIgnoreCase(remoteUrl) && debuggerAddress != null) {
+            return DevToolsConnector.getPageWebSocketUri(debuggerAddress, driver.getWindowHandle());
+        }
+        if (!(driver instanceof RemoteWebDriver)) {
+            throw new WebDriverException("Браузер не поддерживает подключение к devTools: " + driver);
+        }
+        return DevToolsConnector.getRemotePageWebSocketUri(remoteUrl, ((RemoteWebDriver) driver).getSessionId());
+    }
+
+    private static WebDriver unwrap(WebDriver driver) {
+        while (driver instanceof WrapsDriver) {
+            driver = ((WrapsDriver) driver).getWrappedDriver();
+        }
+        return driver;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import com.github.kklisura.cdt.protocol.commands.Network;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Блокировка сетевых запросов браузера через Chrome DevTools Protocol.
+ * Вынесена в отдельный класс, чтобы клиент CDP загружался только если задан abortedNetworkRequestsList
+ * <p>
+ * Шаблоны запросов разбираются один раз при загрузке класса и используются всеми сессиями.
+ * Блокировка выполняется командой Network.setBlockedURLs: в локальных chrome и edge через CDP-команды драйвера,
+ * в удаленных сессиях через общее соединение DevToolsManager.
+ * Network.enable и Network.setBlockedURLs отправляются последовательно, т.к. блокировка действует только после включения домена Network
+ */
+@Slf4j
+final class DevToolsRequestBlocker {
+
+    private static final Map<String, Object> BLOCKED_URLS_PARAMS =
+            Collections.singletonMap("urls", CustomDriverProvider.ABORTED_NETWORK_REQUESTS);
+
+    static {
+        log.info("---------------Aborted Requests---------------------");
+        CustomDriverProvider.ABORTED_NETWORK_REQUESTS.forEach(log::info);
+    }
+
+    private DevToolsRequestBlocker() {
+
+    }
+
+    /**
+     * Передает браузеру запросы, которые нужно блокировать
+     * @param driver - проинициализированный драйвер chrome или edge, локальный или удаленный
+     */
+    static void setAbortedNetworkRequests(WebDriver driver) {
+        if (driver instanceof HasCdp) {
+            HasCdp cdp = (HasCdp) driver;
+            cdp.executeCdpCommand("Network.enable", Collections.emptyMap());
+            cdp.executeCdpCommand("Network.setBlockedURLs", BLOCKED_URLS_PARAMS);
+            return;
+        }
+        Network network = DevToolsManager.getDevTools(driver).getNetwork();
+        network.enable();
+        network.setBlockedURLs(CustomDriverProvider.ABORTED_NETWORK_REQUESTS);
+    }
+}
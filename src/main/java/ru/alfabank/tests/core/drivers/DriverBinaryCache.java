@@ -0,0 +1,342 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import io.github.bonigarcia.wdm.config.Config;
+import io.github.bonigarcia.wdm.config.DriverManagerType;
+import io.github.bonigarcia.wdm.online.HttpClient;
+import io.github.bonigarcia.wdm.versions.VersionDetector;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import static ru.alfabank.tests.core.helpers.PropertyLoader.getSnapshot;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadSystemPropertyOrDefault;
+
+/**
+ * Кэш исполняемых файлов драйверов браузеров, загружаемых WebDriverManager.
+ * <p>
+ * Версия и путь к драйверу определяются один раз за запуск JVM и сохраняются в манифест
+ * manifest.properties в директории driverBinaryCacheDir (по умолчанию ~/.akita/drivers), туда же загружаются драйверы.
+ * Записи манифеста различаются мажорной версией браузера: заданной свойством browserVersion
+ * или определенной по установленному браузеру, поэтому после обновления браузера драйвер определяется заново.
+ * Следующие запуски берут драйвер из манифеста без обращения к сети.
+ * Если сессия не создается из-за несовпадения версий драйвера и браузера, запись удаляется,
+ * драйвер определяется заново и сессия создается повторно (см. createDriver).
+ * Если запись в манифесте старше driverBinaryCacheTtl (по умолчанию 1d), используется сохраненный драйвер,
+ * а новая версия определяется в фоне и будет использована со следующего запуска.
+ * При driverBinaryCacheOffline=true версия не определяется никогда, драйверы берутся только из манифеста,
+ * что позволяет запускать тесты без доступа в интернет после однократного заполнения кэша
+ */
+@Slf4j
+public class DriverBinaryCache {
+
+    public static final String MANIFEST_FILE = "manifest.properties";
+
+    private static final Pattern VERSION_MISMATCH = Pattern.compile("(?i)only supports|browser version");
+
+    private final Path cacheDir;
+    private final Duration ttl;
+    private final boolean offline;
+    private final Function<DriverManagerType, String> browserVersionDetector;
+    private final BiFunction<DriverManagerType, String, Binary> resolver;
+    private final Map<DriverManagerType, String> resolvedPaths = new ConcurrentHashMap<>();
+    private final Map<DriverManagerType, String> resolvedKeys = new ConcurrentHashMap<>();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "akita-driver-binary-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param cacheDir               директория для драйверов и манифеста
+     * @param ttl                    время, после которого версия драйвера определяется заново
+     * @param offline                использовать только драйверы из манифеста
+     * @param browserVersionDetector мажорная версия браузера или пустая строка, если ее не удалось определить
+     * @param resolver               определение версии и загрузка драйвера для мажорной версии браузера
+     */
+    public DriverBinaryCache(Path cacheDir, Duration ttl, boolean offline,
+                             Function<DriverManagerType, String> browserVersionDetector,
+                             BiFunction<DriverManagerType, String, Binary> resolver) {
+        this.cacheDir = cacheDir;
+        this.ttl = ttl;
+        this.offline = offline;
+        this.browserVersionDetector = browserVersionDetector;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Возвращает общий кэш, настроенный свойствами driverBinaryCacheDir, driverBinaryCacheTtl и driverBinaryCacheOffline
+     */
+    public static DriverBinaryCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Возвращает путь к драйверу и прописывает его в системное свойство webdriver.*.driver.
+     * В рамках JVM драйвер определяется только при первом вызове
+     *
+     * @param type тип браузера
+     * @return путь к исполняемому файлу драйвера
+     */
+    public String setup(DriverManagerType type) {
+        String path = resolvedPaths.computeIfAbsent(type, this::resolve);
+        System.setProperty(getExportParameter(type), path);
+        return path;
+    }
+
+    /**
+     * Подготавливает драйвер и создает сессию браузера.
+     * Если сессия не создана из-за несовпадения версий драйвера и браузера, запись манифеста удаляется,
+     * драйвер определяется заново и сессия создается еще раз
+     *
+     * @param type    тип браузера
+     * @param factory создание сессии с драйвером, прописанным в системное свойство webdriver.*.driver
+     * @return созданная сессия
+     */
+    public <T> T createDriver(DriverManagerType type, Supplier<T> factory) {
+        setup(type);
+        try {
+            return factory.get();
+        } catch (SessionNotCreatedException e) {
+            if (offline || e.getRawMessage() == null || !VERSION_MISMATCH.matcher(e.getRawMessage()).find()) {
+                throw e;
+            }
+            log.warn(String.format("Драйвер %s не подходит к браузеру, версия определяется заново: %s",
+                    type.getNameLowerCase(), e.getRawMessage()));
+            invalidate(type);
+            setup(type);
+            return factory.get();
+        }
+    }
+
+    /**
+     * Удаляет запись манифеста, из которой взят драйвер, чтобы следующий вызов setup определил его заново
+     *
+     * @param type тип браузера
+     */
+    public void invalidate(DriverManagerType type) {
+        resolvedPaths.remove(type);
+        String key = resolvedKeys.remove(type);
+        if (key != null) {
+            removeFromManifest(key);
+        }
+    }
+
+    private String resolve(DriverManagerType type) {
+        String browserVersion = browserVersionDetector.apply(type);
+        String key = browserVersion.isEmpty() ? type.getNameLowerCase() : type.getNameLowerCase() + "." + browserVersion;
+        resolvedKeys.put(type, key);
+        Binary cached = readManifest(key);
+        if (cached != null && Files.isExecutable(Paths.get(cached.getPath()))) {
+            if (!offline && System.currentTimeMillis() - cached.getResolvedAt() > ttl.toMillis()) {
+                refresher.execute(() -> refreshQuietly(type, browserVersion, key));
+            }
+            log.info(String.format("Драйвер %s %s взят из кэша: %s", key, cached.getVersion(), cached.getPath()));
+            return cached.getPath();
+        }
+        if (offline) {
+            throw new WebDriverException(String.format("Драйвер %s не найден в кэше %s, а определение версии отключено " +
+                    "свойством driverBinaryCacheOffline", key, cacheDir));
+        }
+        return refresh(type, browserVersion, key).getPath();
+    }
+
+    private Binary refresh(DriverManagerType type, String browserVersion, String key) {
+        Binary binary = resolver.apply(type, browserVersion);
+        binary = new Binary(binary.getVersion(), binary.getPath(), System.currentTimeMillis());
+        writeManifest(key, binary);
+        log.info(String.format("Драйвер %s %s сохранен в кэш: %s", key, binary.getVersion(), binary.getPath()));
+        return binary;
+    }
+
+    private void refreshQuietly(DriverManagerType type, String browserVersion, String key) {
+        try {
+            refresh(type, browserVersion, key);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось обновить драйвер " + key + ", используется сохраненный: " + e.getMessage());
+        }
+    }
+
+    private synchronized Binary readManifest(String prefix) {
+        Properties manifest = loadManifest();
+        String path = manifest.getProperty(prefix + ".path");
+        if (path == null) {
+            return null;
+        }
+        long resolvedAt;
+        try {
+            resolvedAt = Long.parseLong(manifest.getProperty(prefix + ".resolvedAt", "0"));
+        } catch (NumberFormatException e) {
+            resolvedAt = 0;
+        }
+        return new Binary(manifest.getProperty(prefix + ".version", ""), path, resolvedAt);
+    }
+
+    /**
+     * Записывает манифест во временный файл и атомарно заменяет им предыдущий,
+     * чтобы параллельно запущенные JVM не прочитали манифест частично
+     */
+    private synchronized void writeManifest(String prefix, Binary binary) {
+        Properties manifest = loadManifest();
+        manifest.setProperty(prefix + ".version", binary.getVersion());
+        manifest.setProperty(prefix + ".path", binary.getPath());
+        manifest.setProperty(prefix + ".resolvedAt", String.valueOf(binary.getResolvedAt()));
+        storeManifest(manifest);
+    }
+
+    private synchronized void removeFromManifest(String prefix) {
+        Properties manifest = loadManifest();
+        manifest.remove(prefix + ".version");
+        manifest.remove(prefix + ".path");
+        manifest.remove(prefix + ".resolvedAt");
+        storeManifest(manifest);
+    }
+
+    private void storeManifest(Properties manifest) {
+        try {
+            Files.createDirectories(cacheDir);
+            Path tmp = Files.createTempFile(cacheDir, MANIFEST_FILE, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                manifest.store(out, "Akita driver binary cache");
+            }
+            Files.move(tmp, cacheDir.resolve(MANIFEST_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить манифест кэша драйверов: " + e.getMessage());
+        }
+    }
+
+    private Properties loadManifest() {
+        Properties manifest = new Properties();
+        Path file = cacheDir.resolve(MANIFEST_FILE);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                manifest.load(in);
+            } catch (IOException e) {
+                log.warn("Не удалось прочитать манифест кэша драйверов: " + e.getMessage());
+            }
+        }
+        return manifest;
+    }
+
+    private static String getExportParameter(DriverManagerType type) {
+        switch (type) {
+            case FIREFOX:
+                return "webdriver.gecko.driver";
+            case OPERA:
+                return "webdriver.opera.driver";
+            case EDGE:
+                return "webdriver.edge.driver";
+            case IEXPLORER:
+                return "webdriver.ie.driver";
+            default:
+                return "webdriver.chrome.driver";
+        }
+    }
+
+    /**
+     * Возвращает мажорную версию браузера из свойства browserVersion, а если оно не задано -
+     * версию установленного браузера, определенную локальной командой WebDriverManager
+     */
+    private static String detectBrowserVersion(DriverManagerType type) {
+        String browserVersion = loadSystemPropertyOrDefault(CapabilityType.BROWSER_VERSION, "");
+        if (!browserVersion.isEmpty() && !"latest".equals(browserVersion)) {
+            return getMajorVersion(browserVersion);
+        }
+        Config config = new Config().setCommandsPropertiesOnlineFirst(false);
+        try (HttpClient httpClient = new HttpClient(config)) {
+            return new VersionDetector(config, httpClient)
+                    .getBrowserVersionFromTheShell(type.getBrowserNameLowerCase())
+                    .map(DriverBinaryCache::getMajorVersion)
+                    .orElse("");
+        } catch (IOException | RuntimeException e) {
+            log.debug("Не удалось определить версию браузера " + type.getBrowserName() + ": " + e.getMessage());
+            return "";
+        }
+    }
+
+    private static String getMajorVersion(String version) {
+        int dot = version.indexOf('.');
+        return (dot < 0 ? version : version.substring(0, dot)).trim();
+    }
+
+    /**
+     * Определяет версию и загружает драйвер через WebDriverManager в директорию кэша
+     */
+    private static Binary resolveWithWebDriverManager(DriverManagerType type, String browserVersion, Path cacheDir) {
+        WebDriverManager manager = WebDriverManager.getInstance(type).cachePath(cacheDir.toString()).avoidExport();
+        if (!browserVersion.isEmpty()) {
+            manager.browserVersion(browserVersion);
+        }
+        manager.setup();
+        return new Binary(manager.getDownloadedDriverVersion(), manager.getDownloadedDriverPath(), System.currentTimeMillis());
+    }
+
+    /**
+     * Запись манифеста: версия драйвера, путь к исполняемому файлу и время определения версии
+     */
+    public static final class Binary {
+        private final String version;
+        private final String path;
+        private final long resolvedAt;
+
+        public Binary(String version, String path, long resolvedAt) {
+            this.version = version;
+            this.path = path;
+            this.resolvedAt = resolvedAt;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getResolvedAt() {
+            return resolvedAt;
+        }
+    }
+
+    private static final class Holder {
+        private static final Path CACHE_DIR = Paths.get(loadSystemPropertyOrDefault("driverBinaryCacheDir",
+                Paths.get(System.getProperty("user.home"), ".akita", "drivers").toString()));
+        private static final DriverBinaryCache INSTANCE = new DriverBinaryCache(
+                CACHE_DIR,
+                getSnapshot().getDuration("driverBinaryCacheTtl", Duration.ofDays(1)),
+                loadSystemPropertyOrDefault("driverBinaryCacheOffline", false),
+                DriverBinaryCache::detectBrowserVersion,
+                (type, browserVersion) -> resolveWithWebDriverManager(type, browserVersion, CACHE_DIR));
+    }
+}
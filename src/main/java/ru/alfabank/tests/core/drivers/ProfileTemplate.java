@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadSystemPropertyOrDefault;
+
+/**
+ * Подготовленный шаблон профиля chrome (user-data-dir), ускоряющий запуск локального браузера.
+ * Задается свойством chromeProfileTemplate - путь к директории профиля, в которой уже выполнены действия первого запуска:
+ * сохранены настройки, приняты сертификаты, отключены фоновые сервисы.
+ * <p>
+ * Каждая новая сессия получает собственную копию шаблона во временной директории, шаблон не изменяется.
+ * Копирование выполняется с copy-on-write: в linux через cp --reflink=auto (btrfs, xfs),
+ * в macOS через cp -c, использующий clonefile (apfs). Такая копия создается почти мгновенно и не занимает места,
+ * в остальных случаях файлы копируются средствами Java.
+ * Файлы блокировки профиля не копируются. Копия удаляется при закрытии браузера и при завершении JVM
+ */
+@Slf4j
+public final class ProfileTemplate {
+
+    public static final String CHROME_PROFILE_TEMPLATE = "chromeProfileTemplate";
+
+    private static final List<String> LOCK_FILES = Arrays.asList("SingletonLock", "SingletonSocket", "SingletonCookie", "lockfile");
+    private static final Set<Path> PROFILE_COPIES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> PROFILE_COPIES.forEach(ProfileTemplate::delete),
+                "akita-profile-cleanup"));
+    }
+
+    private ProfileTemplate() {
+
+    }
+
+    /**
+     * Проверяет, задан ли шаблон профиля свойством chromeProfileTemplate
+     */
+    public static boolean isConfigured() {
+        return !loadSystemPropertyOrDefault(CHROME_PROFILE_TEMPLATE, "").isEmpty();
+    }
+
+    /**
+     * Запускает ChromeDriver с копией шаблона профиля, при закрытии браузера копия удаляется
+     *
+     * @param options настройки браузера, к которым добавляется user-data-dir
+     * @return драйвер
+     */
+    static ChromeDriver createChromeDriver(ChromeOptions options) {
+        Path template = Paths.get(loadSystemPropertyOrDefault(CHROME_PROFILE_TEMPLATE, ""));
+        Path profile;
+        try {
+            profile = Files.createTempDirectory("akita-profile");
+            PROFILE_COPIES.add(profile);
+            copy(template, profile);
+        } catch (IOException e) {
+            throw new WebDriverException("Не удалось подготовить профиль браузера из шаблона " + template, e);
+        }
+        options.addArguments("--user-data-dir=" + profile.toAbsolutePath(),
+                "--no-first-run", "--no-default-browser-check", "--disable-component-update");
+        try {
+            return new ChromeDriver(options) {
+                @Override
+                public void quit() {
+                    try {
+                        super.quit();
+                    } finally {
+                        delete(profile);
+                    }
+                }
+            };
+        } catch (RuntimeException e) {
+            delete(profile);
+            throw e;
+        }
+    }
+
+    /**
+     * Копирует шаблон профиля в заданную директорию, по возможности используя copy-on-write
+     *
+     * @param template директория шаблона
+     * @param target   существующая пустая директория копии
+     */
+    public static void copy(Path template, Path target) throws IOException {
+        if (!Files.isDirectory(template)) {
+            throw new IOException("Шаблон профиля не найден: " + template);
+        }
+        if (!copyOnWrite(template, target)) {
+            copyFiles(template, target);
+        }
+        for (String lockFile : LOCK_FILES) {
+            Files.deleteIfExists(target.resolve(lockFile));
+        }
+    }
+
+    /**
+     * Копирование через cp: cp -c (clonefile) в macOS, cp --reflink=auto из GNU coreutils в linux.
+     * Если клонирование файлов недоступно, cp -c завершается ошибкой и файлы копируются средствами Java
+     *
+     * @return true, если копирование выполнено
+     */
+    private static boolean copyOnWrite(Path template, Path target) {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String cloneOption;
+        if (os.startsWith("mac")) {
+            cloneOption = "-c";
+        } else if (os.startsWith("linux")) {
+            cloneOption = "--reflink=auto";
+        } else {
+            return false;
+        }
+        try {
+            Process process = new ProcessBuilder("cp", "-R", cloneOption,
+                    template.toAbsolutePath() + File.separator + ".", target.toAbsolutePath().toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.to(new File("/dev/null")))
+                    .start();
+            if (process.waitFor(60, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                return true;
+            }
+            process.destroyForcibly();
+        } catch (IOException e) {
+            log.debug("cp недоступен: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        clear(target);
+        return false;
+    }
+
+    private static void copyFiles(Path template, Path target) throws IOException {
+        Files.walkFileTree(template, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(template.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!LOCK_FILES.contains(file.getFileName().toString())) {
+                    Files.copy(file, target.resolve(template.relativize(file).toString()),
+                            StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Удаляет содержимое директории, оставляя саму директорию
+     */
+    private static void clear(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.filter(file -> !file.equals(dir))
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (IOException e) {
+            log.warn("Не удалось очистить директорию " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static void delete(Path dir) {
+        clear(dir);
+        dir.toFile().delete();
+        PROFILE_COPIES.remove(dir);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriverException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static ru.alfabank.tests.core.helpers.PropertyLoader.getSnapshot;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadPropertyInt;
+
+/**
+ * Планировщик создания удаленных сессий (Selenoid, Selenium Grid).
+ * Ограничивает количество одновременных сессий для каждого remoteUrl свойством remoteMaxSessions
+ * (0 - без ограничений), потоки ожидают свободный слот в порядке очереди (FIFO).
+ * Если грид отказал в создании сессии из-за нехватки мест (SessionNotCreatedException с сообщением,
+ * подходящим под remoteSessionRetryPattern: quota, capacity, queue, busy и т.п.), попытка повторяется
+ * до remoteSessionRetries раз с экспоненциально растущей случайной задержкой от remoteSessionBackoff
+ * до remoteSessionMaxBackoff, чтобы параллельные потоки не повторяли запросы одновременно.
+ * Остальные ошибки (некорректные capabilities, неверный или недоступный remoteUrl) не повторяются.
+ * Слот освобождается при закрытии сессии, статистика ожидания слотов доступна через getStats
+ */
+@Slf4j
+public class RemoteSessionScheduler {
+
+    public static final String DEFAULT_RETRY_PATTERN =
+            "(?i)quota|capacity|queue|no free|busy|new session request timed out|cannot create session on any hosts";
+
+    private final int maxSessions;
+    private final int retries;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Duration queueTimeout;
+    private final Pattern retryPattern;
+    private final Map<String, Semaphore> slots = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSessions  максимальное количество одновременных сессий на один remoteUrl, 0 - без ограничений
+     * @param retries      количество повторных попыток создания сессии
+     * @param backoff      задержка перед первой повторной попыткой
+     * @param maxBackoff   максимальная задержка между попытками
+     * @param queueTimeout максимальное время ожидания свободного слота
+     */
+    public RemoteSessionScheduler(int maxSessions, int retries, Duration backoff, Duration maxBackoff, Duration queueTimeout) {
+        this(maxSessions, retries, backoff, maxBackoff, queueTimeout, Pattern.compile(DEFAULT_RETRY_PATTERN));
+    }
+
+    /**
+     * @param maxSessions  максимальное количество одновременных сессий на один remoteUrl, 0 - без ограничений
+     * @param retries      количество повторных попыток создания сессии
+     * @param backoff      задержка перед первой повторной попыткой
+     * @param maxBackoff   максимальная задержка между попытками
+     * @param queueTimeout максимальное время ожидания свободного слота
+     * @param retryPattern сообщения отказов грида из-за нехватки мест, после которых попытка повторяется
+     */
+    public RemoteSessionScheduler(int maxSessions, int retries, Duration backoff, Duration maxBackoff, Duration queueTimeout,
+                                  Pattern retryPattern) {
+        this.maxSessions = maxSessions;
+        this.retries = retries;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.queueTimeout = queueTimeout;
+        this.retryPattern = retryPattern;
+    }
+
+    /**
+     * Возвращает общий планировщик, настроенный свойствами remoteMaxSessions, remoteSessionRetries,
+     * remoteSessionBackoff, remoteSessionMaxBackoff и remoteSessionQueueTimeout
+     */
+    public static RemoteSessionScheduler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Ожидает свободный слот для remoteUrl и создает сессию, повторяя попытки при отказе грида из-за нехватки мест.
+     * Созданная сессия обязана вызвать Slot.release() при закрытии, при ошибке создания слот освобождается автоматически
+     *
+     * @param remoteUrl url грида
+     * @param factory   создание сессии в полученном слоте
+     * @return созданная сессия
+     */
+    public <T> T createSession(String remoteUrl, Function<Slot, T> factory) {
+        Slot slot = acquire(remoteUrl);
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return factory.apply(slot);
+                } catch (WebDriverException e) {
+                    if (attempt >= retries || !isCapacityFailure(e)) {
+                        throw e;
+                    }
+                    long delay = getBackoffDelay(attempt);
+                    getStats(remoteUrl).retries.incrementAndGet();
+                    log.warn(String.format("Не удалось создать сессию на %s, повтор через %d мс: %s",
+                            remoteUrl, delay, e.getMessage()));
+                    sleep(delay);
+                }
+            }
+        } catch (RuntimeException e) {
+            slot.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет, что грид отказал из-за нехватки мест и повторная попытка может быть успешной.
+     * Сравнивается сообщение без добавляемой Selenium информации о системе
+     */
+    private boolean isCapacityFailure(WebDriverException e) {
+        return e instanceof SessionNotCreatedException && e.getRawMessage() != null
+                && retryPattern.matcher(e.getRawMessage()).find();
+    }
+
+    /**
+     * Возвращает статистику ожидания слотов для remoteUrl
+     */
+    public Stats getStats(String remoteUrl) {
+        return stats.computeIfAbsent(remoteUrl, url -> new Stats());
+    }
+
+    private Slot acquire(String remoteUrl) {
+        if (maxSessions <= 0) {
+            return new Slot(null);
+        }
+        Semaphore semaphore = slots.computeIfAbsent(remoteUrl, url -> new Semaphore(maxSessions, true));
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SessionNotCreatedException("Ожидание свободного слота на " + remoteUrl + " прервано");
+        }
+        long waited = System.nanoTime() - start;
+        getStats(remoteUrl).recordWait(waited);
+        if (!acquired) {
+            throw new SessionNotCreatedException(String.format("Нет свободного слота на %s в течение %d с",
+                    remoteUrl, queueTimeout.getSeconds()));
+        }
+        if (TimeUnit.NANOSECONDS.toMillis(waited) > 0) {
+            log.info(String.format("Ожидание свободного слота на %s: %d мс", remoteUrl, TimeUnit.NANOSECONDS.toMillis(waited)));
+        }
+        return new Slot(semaphore);
+    }
+
+    /**
+     * Экспоненциальная задержка со случайной составляющей: от половины до полного значения
+     */
+    private long getBackoffDelay(int attempt) {
+        long delay = backoff.toMillis() << Math.min(attempt, 20);
+        delay = Math.min(delay, maxBackoff.toMillis());
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SessionNotCreatedException("Ожидание повторной попытки создания сессии прервано");
+        }
+    }
+
+    /**
+     * Слот сессии на гриде, повторное освобождение игнорируется
+     */
+    public static final class Slot {
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Slot(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        public void release() {
+            if (semaphore != null && released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * Статистика ожидания слотов
+     */
+    public static final class Stats {
+        private final AtomicLong acquisitions = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+
+        private void recordWait(long nanos) {
+            acquisitions.incrementAndGet();
+            totalWaitNanos.addAndGet(nanos);
+            maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getAcquisitions() {
+            return acquisitions.get();
+        }
+
+        public Duration getTotalWait() {
+            return Duration.ofNanos(totalWaitNanos.get());
+        }
+
+        public Duration getMaxWait() {
+            return Duration.ofNanos(maxWaitNanos.get());
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("слотов получено: %d, ожидание всего: %d мс, максимум: %d мс, повторных попыток: %d",
+                    getAcquisitions(), getTotalWait().toMillis(), getMaxWait().toMillis(), getRetries());
+        }
+    }
+
+    private static final class Holder {
+        private static final RemoteSessionScheduler INSTANCE = new RemoteSessionScheduler(
+                loadPropertyInt("remoteMaxSessions", 0),
+                loadPropertyInt("remoteSessionRetries", 3),
+                getSnapshot().getDuration("remoteSessionBackoff", Duration.ofSeconds(1)),
+                getSnapshot().getDuration("remoteSessionMaxBackoff", Duration.ofSeconds(30)),
+                getSnapshot().getDuration("remoteSessionQueueTimeout", Duration.ofMinutes(10)),
+                Pattern.compile(getSnapshot().get("remoteSessionRetryPattern", DEFAULT_RETRY_PATTERN)));
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> INSTANCE.stats.forEach((remoteUrl, stats) ->
+                    log.info("Статистика сессий " + remoteUrl + ": " + stats)), "akita-session-stats"));
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import com.github.kklisura.cdt.protocol.commands.Fetch;
+import com.github.kklisura.cdt.protocol.events.fetch.RequestPaused;
+import com.github.kklisura.cdt.protocol.types.fetch.HeaderEntry;
+import com.github.kklisura.cdt.protocol.types.fetch.RequestPattern;
+import com.github.kklisura.cdt.protocol.types.fetch.RequestStage;
+import com.github.kklisura.cdt.protocol.types.network.ErrorReason;
+import com.github.kklisura.cdt.protocol.types.network.ResourceType;
+import com.github.kklisura.cdt.services.ChromeDevToolsService;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadSystemPropertyOrDefault;
+
+/**
+ * Профиль блокировки ресурсов страницы по типу и размеру для ускорения функциональных сценариев.
+ * Работает через CDP Fetch в chrome и edge, как локальных, так и удаленных (Selenoid),
+ * используя общее соединение сессии из DevToolsManager.
+ * <p>
+ * blockedResourceTypes - типы ресурсов CDP через запятую, которые не загружаются (-DblockedResourceTypes=Image,Font,Media).
+ * blockedResourceMaxSize - максимальный размер изображений, шрифтов и медиа в байтах, более крупные не загружаются.
+ * Неизвестный тип ресурса или некорректный размер приводят к ошибке при первом запуске браузера.
+ * Запросы заблокированных типов прерываются до отправки в сеть. Изображения, шрифты и медиа с ограничением размера
+ * перехватываются на этапе получения заголовков ответа, поэтому тело ресурса не скачивается,
+ * а размер сэкономленного трафика определяется по заголовку Content-Length
+ * (для запросов, прерванных до отправки, он неизвестен и не учитывается).
+ * <p>
+ * Сценарии с тегом @loadAllResources (например, проверки верстки через LayoutSteps) загружают все ресурсы,
+ * внутри сценария блокировку можно включить и отключить шагом.
+ * Количество заблокированных запросов и сэкономленных байт выводится в отчет сценария и в лог при завершении JVM
+ */
+@Slf4j
+public final class ResourceTypeBlocker {
+
+    public static final String BLOCKED_RESOURCE_TYPES = "blockedResourceTypes";
+    public static final String BLOCKED_RESOURCE_MAX_SIZE = "blockedResourceMaxSize";
+    public static final String LOAD_ALL_RESOURCES_TAG = "@loadAllResources";
+
+    private static final Profile PROFILE = new Profile(
+            loadSystemPropertyOrDefault(BLOCKED_RESOURCE_TYPES, ""),
+            Long.parseLong(loadSystemPropertyOrDefault(BLOCKED_RESOURCE_MAX_SIZE, "0").trim()));
+
+    private static final Map<WebDriver, BlockingSession> SESSIONS = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Stats TOTAL = new Stats();
+
+    static {
+        if (isConfigured()) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                    log.info("Заблокировано ресурсов за прогон: " + TOTAL), "akita-resource-blocker-stats"));
+        }
+    }
+
+    private ResourceTypeBlocker() {
+
+    }
+
+    /**
+     * Проверяет, задан ли профиль блокировки свойствами blockedResourceTypes или blockedResourceMaxSize
+     */
+    public static boolean isConfigured() {
+        return !PROFILE.isEmpty();
+    }
+
+    /**
+     * Подключает блокировку к браузеру при первом использовании и включает или отключает ее для текущего сценария.
+     * Браузеры, не поддерживающие CDP, пропускаются, ошибка подключения не прерывает сценарий
+     *
+     * @param driver  драйвер сценария, в том числе обертка пула
+     * @param enabled блокировать ли ресурсы в текущем сценарии
+     */
+    static void attach(WebDriver driver, boolean enabled) {
+        if (!DevToolsManager.isSupported(driver)) {
+            return;
+        }
+        WebDriver rawDriver = unwrap(driver);
+        BlockingSession session;
+        try {
+            session = SESSIONS.compute(rawDriver, (d, current) -> current != null && !current.devTools.isClosed()
+                    ? current
+                    : new BlockingSession(DevToolsManager.getDevTools(d), PROFILE).start());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось подключить блокировку ресурсов: " + e.getMessage());
+            return;
+        }
+        session.startScenario(enabled);
+    }
+
+    /**
+     * Включает или отключает блокировку ресурсов в браузере, например перед открытием страницы,
+     * для которой нужны изображения и шрифты
+     */
+    public static void setEnabled(WebDriver driver, boolean enabled) {
+        BlockingSession session = SESSIONS.get(unwrap(driver));
+        if (session != null) {
+            session.setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Возвращает статистику блокировки с начала текущего сценария или null, если блокировка не подключена
+     */
+    public static Stats getScenarioStats(WebDriver driver) {
+        BlockingSession session = SESSIONS.get(unwrap(driver));
+        return session == null ? null : session.getScenarioStats();
+    }
+
+    /**
+     * Возвращает статистику блокировки за весь прогон
+     */
+    public static Stats getTotalStats() {
+        return TOTAL;
+    }
+
+    /**
+     * Возвращает размер ответа из заголовка Content-Length
+     *
+     * @param headers заголовки ответа
+     * @return размер в байтах или -1, если заголовка нет или он некорректен
+     */
+    public static long getContentLength(List<HeaderEntry> headers) {
+        if (headers == null) {
+            return -1;
+        }
+        for (HeaderEntry header : headers) {
+            if ("content-length".equalsIgnoreCase(header.getName())) {
+                try {
+                    return Long.parseLong(header.getValue().trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static WebDriver unwrap(WebDriver driver) {
+        while (driver instanceof WrapsDriver) {
+            driver = ((WrapsDriver) driver).getWrappedDriver();
+        }
+        return driver;
+    }
+
+    /**
+     * Профиль блокировки: заблокированные типы ресурсов и максимальный размер изображений, шрифтов и медиа
+     */
+    public static final class Profile {
+        private static final Set<ResourceType> SIZE_LIMITED_TYPES =
+                Collections.unmodifiableSet(EnumSet.of(ResourceType.IMAGE, ResourceType.FONT, ResourceType.MEDIA));
+
+        private final Set<ResourceType> blockedTypes;
+        private final long maxSize;
+
+        /**
+         * @param blockedTypes типы ресурсов CDP через запятую, например "Image, Font, TextTrack"
+         * @param maxSize      максимальный размер изображений, шрифтов и медиа в байтах, 0 - без ограничения
+         * @throws IllegalArgumentException если указан неизвестный тип ресурса или отрицательный размер
+         */
+        public Profile(String blockedTypes, long maxSize) {
+            if (maxSize < 0) {
+                throw new IllegalArgumentException("Некорректное значение " + BLOCKED_RESOURCE_MAX_SIZE + ": " + maxSize);
+            }
+            Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+            Arrays.stream(blockedTypes.split(","))
+                    .map(String::trim)
+                    .filter(type -> !type.isEmpty())
+                    .map(Profile::toResourceType)
+                    .forEach(types::add);
+            this.blockedTypes = Collections.unmodifiableSet(types);
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Преобразует имя типа ресурса CDP (Image, TextTrack, CSPViolationReport) в константу ResourceType.
+         * Регистр и символы подчеркивания не учитываются
+         *
+         * @throws IllegalArgumentException если тип ресурса неизвестен
+         */
+        public static ResourceType toResourceType(String type) {
+            String name = type.replace("_", "");
+            return Arrays.stream(ResourceType.values())
+                    .filter(value -> value.name().replace("_", "").equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Неизвестный тип ресурса в " + BLOCKED_RESOURCE_TYPES
+                            + ": " + type + ", допустимые значения: " + Arrays.toString(ResourceType.values())));
+        }
+
+        public Set<ResourceType> getBlockedTypes() {
+            return blockedTypes;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * Проверяет, что профиль ничего не блокирует
+         */
+        public boolean isEmpty() {
+            return blockedTypes.isEmpty() && maxSize == 0;
+        }
+
+        /**
+         * Проверяет, блокируется ли ответ заданного типа и размера
+         *
+         * @param type          тип ресурса
+         * @param contentLength размер ответа в байтах или -1, если размер неизвестен
+         */
+        public boolean isBlocked(ResourceType type, long contentLength) {
+            return blockedTypes.contains(type)
+                    || maxSize > 0 && SIZE_LIMITED_TYPES.contains(type) && contentLength > maxSize;
+        }
+
+        /**
+         * Возвращает типы ресурсов, ответы которых нужно перехватывать для проверки размера:
+         * изображения, шрифты и медиа, не заблокированные целиком
+         */
+        private Set<ResourceType> getSizeCheckedTypes() {
+            Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+            if (maxSize > 0) {
+                types.addAll(SIZE_LIMITED_TYPES);
+                types.removeAll(blockedTypes);
+            }
+            return types;
+        }
+
+        @Override
+        public String toString() {
+            return "типы " + blockedTypes + (maxSize > 0 ? ", размер более " + maxSize + " байт" : "");
+        }
+    }
+
+    /**
+     * Подключение к вкладке браузера, перехватывающее запросы типов из профиля.
+     * Запросы заблокированных типов прерываются до отправки, а изображения, шрифты и медиа с ограничением размера
+     * перехватываются после получения заголовков ответа, когда известен Content-Length
+     */
+    public static final class BlockingSession {
+        private final ChromeDevToolsService devTools;
+        private final Profile profile;
+        private volatile boolean enabled = true;
+        private volatile Stats scenarioStats = new Stats();
+
+        /**
+         * @param devTools соединение с вкладкой браузера
+         * @param profile  профиль блокировки
+         */
+        public BlockingSession(ChromeDevToolsService devTools, Profile profile) {
+            this.devTools = devTools;
+            this.profile = profile;
+        }
+
+        /**
+         * Включает перехват ответов через CDP Fetch
+         *
+         * @return эта же сессия
+         */
+        public BlockingSession start() {
+            List<RequestPattern> patterns = new ArrayList<>();
+            profile.getBlockedTypes().forEach(type -> patterns.add(pattern(type, RequestStage.REQUEST)));
+            profile.getSizeCheckedTypes().forEach(type -> patterns.add(pattern(type, RequestStage.RESPONSE)));
+            Fetch fetch = devTools.getFetch();
+            fetch.onRequestPaused(this::onRequestPaused);
+            fetch.enable(patterns, false);
+            log.info("Блокировка ресурсов: " + profile);
+            return this;
+        }
+
+        /**
+         * Начинает новый сценарий: сбрасывает статистику сценария и включает или отключает блокировку
+         */
+        public void startScenario(boolean enabled) {
+            this.enabled = enabled;
+            this.scenarioStats = new Stats();
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Stats getScenarioStats() {
+            return scenarioStats;
+        }
+
+        private static RequestPattern pattern(ResourceType type, RequestStage stage) {
+            RequestPattern pattern = new RequestPattern();
+            pattern.setUrlPattern("*");
+            pattern.setResourceType(type);
+            pattern.setRequestStage(stage);
+            return pattern;
+        }
+
+        private void onRequestPaused(RequestPaused event) {
+            Fetch fetch = devTools.getFetch();
+            try {
+                long size = getContentLength(event.getResponseHeaders());
+                if (enabled && profile.isBlocked(event.getResourceType(), size)) {
+                    fetch.failRequest(event.getRequestId(), ErrorReason.BLOCKED_BY_CLIENT);
+                    scenarioStats.record(size);
+                    TOTAL.record(size);
+                } else {
+                    fetch.continueRequest(event.getRequestId());
+                }
+            } catch (RuntimeException e) {
+                log.debug("Не удалось обработать запрос " + event.getRequestId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Статистика заблокированных ресурсов
+     */
+    public static final class Stats {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private void record(long size) {
+            requests.incrementAndGet();
+            if (size > 0) {
+                bytes.addAndGet(size);
+            }
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * Сэкономленный трафик по заголовкам Content-Length, ответы без заголовка не учитываются
+         */
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("запросов: %d, сэкономлено: %d КБ", getRequests(), getBytes() / 1024);
+        }
+    }
+}
@@ -0,0 +1,558 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.drivers;
+
+import com.codeborne.selenide.Configuration;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.ClassUtils;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static ru.alfabank.tests.core.helpers.PropertyLoader.getSnapshot;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadPropertyInt;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadSystemPropertyOrDefault;
+
+/**
+ * Пул сессий браузера, переиспользуемых между сценариями.
+ * Включается свойством webDriverPool=true.
+ * <p>
+ * Драйвер из пула оборачивается прокси, у которого вызов quit() не закрывает браузер, а возвращает его в пул.
+ * Перед возвратом состояние браузера сбрасывается: закрываются лишние вкладки, очищаются cookies и хранилища сайтов,
+ * восстанавливается размер окна и открывается пустая страница.
+ * Для браузеров с CDP (chrome, edge) хранилища всех типов очищаются через Storage.clearDataForOrigin
+ * для каждого сайта из истории навигации открытых вкладок. Сайты, открывавшиеся только во фреймах
+ * или в уже закрытых самим сайтом вкладках, при этом не очищаются.
+ * Для остальных браузеров очищаются только localStorage, sessionStorage и IndexedDB сайта, открытого
+ * в первой вкладке, причем IndexedDB - только если браузер поддерживает indexedDB.databases() (в Firefox - с версии 126).
+ * Если сброс не удался, браузер использован webDriverPoolMaxReuse раз (по умолчанию 50)
+ * или живет дольше webDriverPoolMaxAge (по умолчанию 30m), он закрывается.
+ * Исходный драйвер доступен через WrapsDriver.getWrappedDriver()
+ * <p>
+ * Пул может заранее запускать браузеры в фоновых потоках (см. warmUp), тогда получение браузера
+ * обычно сводится к извлечению из очереди
+ * <p>
+ * Перед выдачей браузер проверяется легкой командой с таймаутом webDriverPoolHealthCheckTimeout (по умолчанию 5s).
+ * Упавший или зависший браузер закрывается в фоне и незаметно для сценария заменяется новым.
+ * Свободные браузеры также проверяются в фоне раз в webDriverPoolHealthCheckInterval (по умолчанию 1m, 0 - отключено).
+ * Количество упавших браузеров и время их замены доступны через getStats() и выводятся в лог при завершении JVM
+ */
+@Slf4j
+public class WebDriverPool {
+
+    public static final String WEB_DRIVER_POOL = "webDriverPool";
+
+    private static final String CLEAR_STORAGE_SCRIPT =
+            "var done = arguments[arguments.length - 1];" +
+            "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}" +
+            "if (window.indexedDB && indexedDB.databases) {" +
+            "  indexedDB.databases().then(function (dbs) {" +
+            "    dbs.forEach(function (db) { indexedDB.deleteDatabase(db.name); }); done();" +
+            "  }, function () { done(); });" +
+            "} else { done(); }";
+
+    private final int maxReuse;
+    private final Duration maxAge;
+    private final Duration healthCheckTimeout;
+    private final Stats stats = new Stats();
+    private final Map<String, Deque<PooledDriver>> idleDrivers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> warmingDrivers = new ConcurrentHashMap<>();
+    private final ExecutorService warmer = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "akita-driver-pool-warmer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService prober = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "akita-driver-pool-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "akita-driver-pool-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Runnable> warmUpTasks = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param maxReuse максимальное количество сценариев, выполняемых в одном браузере
+     * @param maxAge   максимальное время жизни браузера
+     */
+    public WebDriverPool(int maxReuse, Duration maxAge) {
+        this(maxReuse, maxAge, Duration.ofSeconds(5), Duration.ZERO);
+    }
+
+    /**
+     * @param maxReuse            максимальное количество сценариев, выполняемых в одном браузере
+     * @param maxAge              максимальное время жизни браузера
+     * @param healthCheckTimeout  время ожидания ответа браузера при проверке
+     * @param healthCheckInterval период фоновой проверки свободных браузеров, 0 - фоновая проверка отключена
+     */
+    public WebDriverPool(int maxReuse, Duration maxAge, Duration healthCheckTimeout, Duration healthCheckInterval) {
+        this.maxReuse = maxReuse;
+        this.maxAge = maxAge;
+        this.healthCheckTimeout = healthCheckTimeout;
+        if (!healthCheckInterval.isZero() && !healthCheckInterval.isNegative()) {
+            long interval = healthCheckInterval.toMillis();
+            healthChecker.scheduleWithFixedDelay(this::checkIdleDrivers, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Возвращает общий пул, настроенный свойствами webDriverPoolMaxReuse и webDriverPoolMaxAge
+     */
+    public static WebDriverPool getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Проверяет, включен ли пул сессий свойством webDriverPool
+     */
+    public static boolean isEnabled() {
+        return loadSystemPropertyOrDefault(WEB_DRIVER_POOL, false);
+    }
+
+    /**
+     * Возвращает свободный браузер из пула или создает новый
+     *
+     * @param key     ключ, определяющий совместимость браузеров (браузер, remoteUrl и т.д.)
+     * @param factory создание нового браузера
+     * @return обертка над драйвером, возвращающая браузер в пул при вызове quit()
+     */
+    public WebDriver acquire(String key, Supplier<WebDriver> factory) {
+        Deque<PooledDriver> idle = idleDrivers.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+        long replacementStart = 0;
+        PooledDriver pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isExpired(pooled)) {
+                quit(pooled, "истекло время жизни");
+                continue;
+            }
+            if (!isAlive(pooled)) {
+                evict(pooled);
+                if (replacementStart == 0) {
+                    replacementStart = System.nanoTime();
+                }
+                continue;
+            }
+            pooled.uses++;
+            log.info("Браузер взят из пула, использование №" + pooled.uses);
+            if (replacementStart != 0) {
+                stats.recordReplacement(System.nanoTime() - replacementStart);
+            }
+            return wrap(pooled);
+        }
+        WebDriver driver = factory.get();
+        if (replacementStart != 0) {
+            stats.recordReplacement(System.nanoTime() - replacementStart);
+        }
+        return wrap(new PooledDriver(key, driver, 1));
+    }
+
+    /**
+     * Запускает в фоновых потоках столько браузеров, чтобы вместе с уже свободными
+     * их количество для заданного ключа было не меньше size.
+     * Браузеры создаются той же фабрикой, что и при синхронном получении, т.е. с теми же опциями
+     *
+     * @param key     ключ, определяющий совместимость браузеров
+     * @param size    желаемое количество свободных браузеров, 0 - фоновый запуск отключен
+     * @param factory создание нового браузера
+     */
+    public void warmUp(String key, int size, Supplier<WebDriver> factory) {
+        if (size > 0) {
+            warmUpTasks.put(key, () -> warmUp(key, size, factory));
+        }
+        AtomicInteger warming = warmingDrivers.computeIfAbsent(key, k -> new AtomicInteger());
+        while (!closed) {
+            int current = warming.get();
+            if (getIdleCount(key) + current >= size) {
+                return;
+            }
+            if (warming.compareAndSet(current, current + 1)) {
+                warmer.execute(() -> warmUpDriver(key, factory, warming));
+            }
+        }
+    }
+
+    private void warmUpDriver(String key, Supplier<WebDriver> factory, AtomicInteger warming) {
+        try {
+            PooledDriver pooled = new PooledDriver(key, factory.get(), 0);
+            if (closed) {
+                quit(pooled, "завершение работы пула");
+            } else {
+                idleDrivers.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>()).offerLast(pooled);
+                log.info("Браузер заранее запущен и добавлен в пул");
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось заранее запустить браузер: " + e.getMessage());
+        } finally {
+            warming.decrementAndGet();
+        }
+    }
+
+    /**
+     * Возвращает количество свободных браузеров в пуле для заданного ключа
+     */
+    public int getIdleCount(String key) {
+        Deque<PooledDriver> idle = idleDrivers.get(key);
+        return idle == null ? 0 : idle.size();
+    }
+
+    /**
+     * Возвращает статистику упавших и замененных браузеров
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Останавливает фоновый запуск и проверку браузеров и закрывает все свободные браузеры пула
+     */
+    public void shutdown() {
+        closed = true;
+        healthChecker.shutdownNow();
+        warmer.shutdown();
+        prober.shutdownNow();
+        idleDrivers.values().forEach(idle -> {
+            PooledDriver pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                quit(pooled, "завершение работы пула");
+            }
+        });
+    }
+
+    private void release(PooledDriver pooled) {
+        if (pooled.uses >= maxReuse) {
+            quit(pooled, "достигнуто максимальное количество использований");
+        } else if (isExpired(pooled)) {
+            quit(pooled, "истекло время жизни");
+        } else if (!reset(pooled.driver)) {
+            stats.crashes.incrementAndGet();
+            quit(pooled, "не удалось сбросить состояние браузера");
+        } else {
+            idleDrivers.computeIfAbsent(pooled.key, k -> new ConcurrentLinkedDeque<>()).offerFirst(pooled);
+        }
+    }
+
+    private boolean isExpired(PooledDriver pooled) {
+        return System.nanoTime() - pooled.createdAt > maxAge.toNanos();
+    }
+
+    /**
+     * Проверяет, что браузер отвечает: запрашивает список вкладок с таймаутом healthCheckTimeout.
+     * Команда выполняется в отдельном потоке, т.к. зависший браузер может не ответить вовсе
+     */
+    private boolean isAlive(PooledDriver pooled) {
+        Future<Set<String>> handles;
+        try {
+            handles = prober.submit(pooled.driver::getWindowHandles);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        try {
+            return !handles.get(healthCheckTimeout.toMillis(), TimeUnit.MILLISECONDS).isEmpty();
+        } catch (TimeoutException e) {
+            handles.cancel(true);
+            log.warn("Браузер не ответил за " + healthCheckTimeout.toMillis() + " мс");
+            return false;
+        } catch (ExecutionException e) {
+            log.warn("Браузер не отвечает: " + e.getCause().getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Удаляет неисправный браузер, закрытие выполняется в фоне, т.к. зависший браузер может закрываться долго
+     */
+    private void evict(PooledDriver pooled) {
+        stats.crashes.incrementAndGet();
+        try {
+            warmer.execute(() -> quit(pooled, "браузер не отвечает"));
+        } catch (RuntimeException e) {
+            quit(pooled, "браузер не отвечает");
+        }
+    }
+
+    /**
+     * Фоновая проверка свободных браузеров: неисправные удаляются,
+     * а если для ключа настроен фоновый запуск, вместо них заранее запускаются новые
+     */
+    private void checkIdleDrivers() {
+        idleDrivers.forEach((key, idle) -> {
+            boolean evicted = false;
+            for (PooledDriver pooled : new ArrayList<>(idle)) {
+                if (closed || !idle.removeFirstOccurrence(pooled)) {
+                    continue;
+                }
+                if (isAlive(pooled)) {
+                    idle.offerLast(pooled);
+                } else {
+                    evict(pooled);
+                    evicted = true;
+                }
+            }
+            Runnable warmUp = warmUpTasks.get(key);
+            if (evicted && warmUp != null) {
+                warmUp.run();
+            }
+        });
+    }
+
+    private static void quit(PooledDriver pooled, String reason) {
+        log.info("Браузер закрыт: " + reason);
+        try {
+            DevToolsManager.close(pooled.driver);
+            pooled.driver.quit();
+        } catch (WebDriverException e) {
+            log.warn("Ошибка при закрытии браузера: " + e.getMessage());
+        } finally {
+            BrowserMobProxyManager.stopProxy(pooled.driver);
+        }
+    }
+
+    /**
+     * Сбрасывает состояние браузера перед возвратом в пул
+     *
+     * @return true, если браузер исправен и готов к следующему сценарию
+     */
+    private static boolean reset(WebDriver driver) {
+        try {
+            List<String> handles = new ArrayList<>(driver.getWindowHandles());
+            if (handles.isEmpty()) {
+                return false;
+            }
+            Set<String> origins = new LinkedHashSet<>();
+            for (int i = handles.size() - 1; i > 0; i--) {
+                driver.switchTo().window(handles.get(i));
+                collectVisitedOrigins(driver, origins);
+                driver.close();
+            }
+            driver.switchTo().window(handles.get(0));
+            collectVisitedOrigins(driver, origins);
+            if (driver instanceof HasCdp) {
+                HasCdp cdp = (HasCdp) driver;
+                for (String origin : origins) {
+                    Map<String, Object> params = new HashMap<>();
+                    params.put("origin", origin);
+                    params.put("storageTypes", "all");
+                    cdp.executeCdpCommand("Storage.clearDataForOrigin", params);
+                }
+                cdp.executeCdpCommand("Network.clearBrowserCookies", Collections.emptyMap());
+            } else {
+                if (driver.getCurrentUrl().startsWith("http") && driver instanceof JavascriptExecutor) {
+                    ((JavascriptExecutor) driver).executeAsyncScript(CLEAR_STORAGE_SCRIPT);
+                }
+                driver.manage().deleteAllCookies();
+            }
+            if (Configuration.browserSize != null && Configuration.browserSize.matches("\\d+x\\d+")) {
+                String[] size = Configuration.browserSize.split("x");
+                driver.manage().window().setSize(new Dimension(Integer.parseInt(size[0]), Integer.parseInt(size[1])));
+            }
+            driver.get("about:blank");
+            return true;
+        } catch (WebDriverException e) {
+            log.warn("Ошибка при сбросе состояния браузера: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Добавляет сайты из истории навигации текущей вкладки, только для браузеров с CDP
+     */
+    @SuppressWarnings("unchecked")
+    private static void collectVisitedOrigins(WebDriver driver, Set<String> origins) {
+        if (!(driver instanceof HasCdp)) {
+            return;
+        }
+        Map<String, Object> history = ((HasCdp) driver).executeCdpCommand("Page.getNavigationHistory", Collections.emptyMap());
+        Object entries = history == null ? null : history.get("entries");
+        if (!(entries instanceof List)) {
+            return;
+        }
+        for (Map<String, Object> entry : (List<Map<String, Object>>) entries) {
+            String origin = getOrigin(String.valueOf(entry.get("url")));
+            if (origin != null) {
+                origins.add(origin);
+            }
+        }
+    }
+
+    private static String getOrigin(String url) {
+        try {
+            URI uri = new URI(url);
+            if (uri.getHost() == null || !("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()))) {
+                return null;
+            }
+            return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() == -1 ? "" : ":" + uri.getPort());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private WebDriver wrap(PooledDriver pooled) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>(ClassUtils.getAllInterfaces(pooled.driver.getClass()));
+        interfaces.add(WebDriver.class);
+        interfaces.add(WrapsDriver.class);
+        return (WebDriver) Proxy.newProxyInstance(WebDriverPool.class.getClassLoader(),
+                interfaces.toArray(new Class<?>[0]), new PooledDriverHandler(pooled));
+    }
+
+    private static final class PooledDriver {
+        private final String key;
+        private final WebDriver driver;
+        private final long createdAt = System.nanoTime();
+        private int uses;
+
+        private PooledDriver(String key, WebDriver driver, int uses) {
+            this.key = key;
+            this.driver = driver;
+            this.uses = uses;
+        }
+    }
+
+    /**
+     * Перехватывает quit() и возвращает браузер в пул, остальные вызовы передаются исходному драйверу
+     */
+    private final class PooledDriverHandler implements InvocationHandler {
+        private final PooledDriver pooled;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PooledDriverHandler(PooledDriver pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "quit":
+                    if (released.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "getWrappedDriver":
+                    return pooled.driver;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledDriver(" + pooled.driver + ")";
+                default:
+                    if (released.get()) {
+                        throw new IllegalStateException("Драйвер уже возвращен в пул");
+                    }
+                    try {
+                        return method.invoke(pooled.driver, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Статистика упавших браузеров и их замены
+     */
+    public static final class Stats {
+        private final AtomicLong crashes = new AtomicLong();
+        private final AtomicLong replacements = new AtomicLong();
+        private final AtomicLong totalReplacementNanos = new AtomicLong();
+        private final AtomicLong maxReplacementNanos = new AtomicLong();
+
+        private void recordReplacement(long nanos) {
+            replacements.incrementAndGet();
+            totalReplacementNanos.addAndGet(nanos);
+            maxReplacementNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * Количество браузеров, закрытых из-за того, что они не отвечали или не смогли сбросить состояние
+         */
+        public long getCrashes() {
+            return crashes.get();
+        }
+
+        /**
+         * Количество выдач браузера, при которых неисправный браузер был заменен
+         */
+        public long getReplacements() {
+            return replacements.get();
+        }
+
+        public Duration getTotalReplacementTime() {
+            return Duration.ofNanos(totalReplacementNanos.get());
+        }
+
+        public Duration getMaxReplacementTime() {
+            return Duration.ofNanos(maxReplacementNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("неисправных браузеров: %d, замен: %d, время замены всего: %d мс, максимум: %d мс",
+                    getCrashes(), getReplacements(), getTotalReplacementTime().toMillis(),
+                    getMaxReplacementTime().toMillis());
+        }
+    }
+
+    private static final class Holder {
+        private static final WebDriverPool INSTANCE = new WebDriverPool(
+                loadPropertyInt("webDriverPoolMaxReuse", 50),
+                getSnapshot().getDuration("webDriverPoolMaxAge", Duration.ofMinutes(30)),
+                getSnapshot().getDuration("webDriverPoolHealthCheckTimeout", Duration.ofSeconds(5)),
+                getSnapshot().getDuration("webDriverPoolHealthCheckInterval", Duration.ofMinutes(1)));
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                INSTANCE.shutdown();
+                log.info("Статистика пула браузеров: " + INSTANCE.stats);
+            }, "akita-driver-pool-shutdown"));
+        }
+    }
+}
@@ -79,7 +79,7 @@ public class StepFormatter implements Formatter {
 
         if (isScreenshotAnnotationPresent || isTakeScreenshotAfterStepsProperty) {
             final byte[] screenshot = ((TakesScreenshot) getWebDriver()).getScreenshotAs(OutputType.BYTES);
-            AkitaScenario.getInstance().getScenario().embed(screenshot, "image/png");
+            AkitaScenario.getInstance().embed(screenshot, "image/png");
         }
     }
 }
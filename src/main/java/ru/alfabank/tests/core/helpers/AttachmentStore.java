@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.helpers;
+
+import lombok.SneakyThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadProperty;
+
+/**
+ * Хранилище вложений отчета.
+ * Вложения потоково записываются в директорию прогона {@code <attachmentsDir>/<время запуска>}
+ * (по умолчанию build/attachments), имя файла - SHA-256 содержимого,
+ * поэтому одинаковые вложения сохраняются один раз
+ */
+public final class AttachmentStore {
+
+    private static final Path RUN_DIR = Paths.get(
+            loadProperty("attachmentsDir", System.getProperty("user.dir") + "/build/attachments"),
+            new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+
+    private AttachmentStore() {
+
+    }
+
+    /**
+     * Сохраняет вложение из массива байт
+     *
+     * @param data     содержимое вложения
+     * @param mimeType тип вложения
+     * @return путь к сохраненному файлу
+     */
+    public static Path store(byte[] data, String mimeType) {
+        return store(new ByteArrayInputStream(data), mimeType);
+    }
+
+    /**
+     * Сохраняет вложение из файла, не загружая его целиком в память
+     *
+     * @param file     файл вложения
+     * @param mimeType тип вложения
+     * @return путь к сохраненному файлу
+     */
+    @SneakyThrows(IOException.class)
+    public static Path store(File file, String mimeType) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return store(in, mimeType);
+        }
+    }
+
+    /**
+     * Потоково сохраняет вложение в директорию прогона.
+     * Содержимое пишется во временный файл с одновременным подсчетом хэша,
+     * после чего файл переименовывается в {@code <sha-256>.<расширение>}
+     *
+     * @param in       поток с содержимым вложения, не закрывается
+     * @param mimeType тип вложения
+     * @return путь к сохраненному файлу
+     */
+    @SneakyThrows({IOException.class, NoSuchAlgorithmException.class})
+    public static Path store(InputStream in, String mimeType) {
+        Files.createDirectories(RUN_DIR);
+        Path tmp = Files.createTempFile(RUN_DIR, "attachment-", ".tmp");
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), digest)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        Path target = RUN_DIR.resolve(toHex(digest.digest()) + "." + getExtension(mimeType));
+        try {
+            Files.move(tmp, target);
+        } catch (FileAlreadyExistsException e) {
+            Files.delete(tmp);
+        }
+        return target;
+    }
+
+    /**
+     * Возвращает директорию, в которую сохраняются вложения текущего прогона
+     */
+    public static Path getRunDir() {
+        return RUN_DIR;
+    }
+
+    private static String getExtension(String mimeType) {
+        switch (String.valueOf(mimeType).toLowerCase()) {
+            case "image/png":
+                return "png";
+            case "image/jpeg":
+                return "jpg";
+            case "application/json":
+                return "json";
+            case "application/xml":
+            case "text/xml":
+                return "xml";
+            case "text/html":
+                return "html";
+            case "text/plain":
+                return "txt";
+            case "application/pdf":
+                return "pdf";
+            default:
+                return "bin";
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
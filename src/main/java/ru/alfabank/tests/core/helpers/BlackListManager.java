@@ -18,7 +18,6 @@ import net.lightbody.bmp.proxy.BlacklistEntry;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -45,7 +44,7 @@ public class BlackListManager {
     }
 
     public void fillBlackList(List<BlacklistEntry> blacklistEntries) {
-        String file = getResource();
+        CharSequence file = getResource();
         Pattern pattern = Pattern.compile("((https?://)?([\\da-z.*-]+)\\.([a-z.]{2,6})([/\\w.*-]*)*/?)\\s?(\\d{3})*");
         Matcher matcher = pattern.matcher(file);
         while (matcher.find()) {
@@ -56,18 +55,16 @@ public class BlackListManager {
     }
 
     @SneakyThrows({IOException.class, URISyntaxException.class})
-    private String getResource() {
+    private CharSequence getResource() {
         ClassLoader classLoader = getClass().getClassLoader();
-        byte[] file = new byte[0];
         try {
             Path path = Paths.get(Objects.requireNonNull(classLoader.getResource(fileName)).toURI());
             if (Files.exists(path)) {
-                file = Files.readAllBytes(path);
-                return new String(file, StandardCharsets.UTF_8);
+                return ResourceHelper.readAsCharSequence(path);
             } else log.warn("Файла '" + fileName + "' - не существует\n");
         } catch (NullPointerException ne) {
             log.warn("Файла '" + fileName + "' - не существует\n");
         }
-        return new String(file);
+        return "";
     }
 }
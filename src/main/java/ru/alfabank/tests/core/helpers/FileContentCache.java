@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.helpers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш содержимого текстовых файлов, ограниченный суммарным размером файлов в байтах.
+ * Запись кэша считается актуальной, пока у файла не изменились время модификации и размер.
+ * При превышении лимита вытесняются давно не использованные записи (LRU)
+ */
+public final class FileContentCache {
+
+    private final long maxSize;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentSize;
+
+    /**
+     * @param maxSize максимальный суммарный размер закэшированных файлов в байтах, 0 - кэш отключен
+     */
+    public FileContentCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Возвращает содержимое файла в кодировке UTF-8.
+     * Файл читается с диска, только если его нет в кэше или он изменился
+     *
+     * @param path путь к файлу
+     * @return содержимое файла
+     * @throws IOException если файл не удалось прочитать
+     */
+    public String read(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isActual(attributes)) {
+                return entry.content;
+            }
+        }
+        String content = new String(Files.readAllBytes(key), StandardCharsets.UTF_8);
+        put(key, new Entry(content, attributes.lastModifiedTime(), attributes.size()));
+        return content;
+    }
+
+    /**
+     * Очищает кэш
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentSize = 0;
+    }
+
+    /**
+     * Возвращает суммарный размер закэшированных файлов в байтах
+     */
+    public synchronized long getCurrentSize() {
+        return currentSize;
+    }
+
+    /**
+     * Возвращает количество закэшированных файлов
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void put(Path key, Entry entry) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            currentSize -= previous.size;
+        }
+        if (entry.size > maxSize) {
+            return;
+        }
+        entries.put(key, entry);
+        currentSize += entry.size;
+        Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+        while (currentSize > maxSize && eldest.hasNext()) {
+            currentSize -= eldest.next().getValue().size;
+            eldest.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final String content;
+        private final FileTime lastModifiedTime;
+        private final long size;
+
+        private Entry(String content, FileTime lastModifiedTime, long size) {
+            this.content = content;
+            this.lastModifiedTime = lastModifiedTime;
+            this.size = size;
+        }
+
+        private boolean isActual(BasicFileAttributes attributes) {
+            return lastModifiedTime.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.helpers;
+
+import com.galenframework.api.Galen;
+import com.galenframework.reports.model.LayoutReport;
+import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static com.codeborne.selenide.WebDriverRunner.getWebDriver;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Проверка верстки с помощью Galen Framework.
+ * Вынесена в отдельный класс, чтобы классы Galen загружались только при первой проверке верстки,
+ * а не при загрузке шагов
+ */
+public final class GalenLayoutChecker {
+
+    private GalenLayoutChecker() {
+
+    }
+
+    /**
+     * Проверяет соответствие текущей страницы ее описанию в .spec файле.
+     * Скриншоты с расхождениями в дизайне сохраняются в заданную директорию и прикрепляются к cucumber отчету
+     *
+     * @param specPath    путь к .spec файлу
+     * @param tags        тэги galen спецификации, может быть null
+     * @param imgDiffPath директория для сохранения скриншотов
+     */
+    public static void checkLayout(String specPath, List<String> tags, String imgDiffPath) throws IOException {
+        LayoutReport report = Galen.checkLayout(getWebDriver(), specPath, tags);
+        report.getFileStorage().copyAllFilesTo(new File(imgDiffPath));
+        if (report.errors() > 0) {
+            embedScreenshotAndFail(report);
+        }
+    }
+
+    private static void embedScreenshotAndFail(LayoutReport report) {
+        Map<String, File> screenshots = report.getFileStorage().getFiles();
+        screenshots.forEach((key, value) -> {
+            if (key.contains("map") || key.contains("expected") || key.contains("actual")) {
+                AkitaScenario.getInstance().write(key);
+                AkitaScenario.getInstance().embed(value, "image/png");
+            }
+        });
+        fail(report.getValidationErrorResults().toString());
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.helpers;
+
+import com.codeborne.selenide.WebDriverRunner;
+import com.github.kklisura.cdt.services.ChromeDevToolsService;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import ru.alfabank.tests.core.drivers.DevToolsManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import static com.codeborne.selenide.WebDriverRunner.getWebDriver;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.getSnapshot;
+
+/**
+ * Ожидание готовности страницы вместо фиксированных пауз.
+ * Страница считается готовой, когда document.readyState равен complete и в течение pageReadyIdleTime
+ * (по умолчанию 500ms) нет незавершенных fetch/XHR запросов и не загружаются новые ресурсы.
+ * Запросы отслеживаются счетчиком, который в chrome и edge регистрируется через CDP для каждого нового документа,
+ * а в остальных браузерах внедряется в страницу при первой проверке; загрузка ресурсов - через PerformanceObserver
+ * или Resource Timing API, поэтому ожидание работает в любом браузере и при pageLoadStrategy=none.
+ * Перед переходом текущий документ помечается (см. markCurrentDocument), и ожидание не завершается,
+ * пока в браузере остается помеченный документ - иначе первая проверка могла бы увидеть готовую предыдущую страницу.
+ * Если страница не стала готовой за pageReadyTimeout (по умолчанию 10s), в лог выводится предупреждение,
+ * а проверки элементов страницы выполняются как обычно. Ожидание после прокрутки ограничено networkIdleTimeout
+ * (по умолчанию 1s), чтобы страницы с постоянными запросами (long-polling, периодические beacon) не замедляли каждый шаг
+ */
+@Slf4j
+public final class PageReadinessWaiter {
+
+    private static final long POLLING_INTERVAL_MILLIS = 100;
+
+    private static final String PREVIOUS_DOCUMENT_MARKER = "__akitaPreviousDocument";
+
+    private static final String MARK_DOCUMENT_SCRIPT =
+            "window." + PREVIOUS_DOCUMENT_MARKER + " = window.location.href;";
+
+    private static final String UNMARK_DOCUMENT_SCRIPT =
+            "delete window." + PREVIOUS_DOCUMENT_MARKER + ";";
+
+    /**
+     * Внедряет в документ счетчик fetch/XHR запросов и наблюдатель загрузки ресурсов.
+     * PerformanceObserver получает все записи Resource Timing, даже когда буфер performance заполнен,
+     * без него буфер увеличивается, чтобы число записей продолжало расти
+     */
+    private static final String NETWORK_COUNTER_SCRIPT =
+            "(function () {" +
+            "  var w = window;" +
+            "  if (w.__akitaNetwork) { return; }" +
+            "  var state = w.__akitaNetwork = {pending: 0, last: Date.now(), resources: 0, observed: false};" +
+            "  var done = function () { state.pending = Math.max(0, state.pending - 1); state.last = Date.now(); };" +
+            "  if (w.fetch) {" +
+            "    var originalFetch = w.fetch;" +
+            "    w.fetch = function () {" +
+            "      state.pending++; state.last = Date.now();" +
+            "      return originalFetch.apply(this, arguments)" +
+            "        .then(function (response) { done(); return response; }, function (error) { done(); throw error; });" +
+            "    };" +
+            "  }" +
+            "  if (w.XMLHttpRequest) {" +
+            "    var originalSend = XMLHttpRequest.prototype.send;" +
+            "    XMLHttpRequest.prototype.send = function () {" +
+            "      state.pending++; state.last = Date.now();" +
+            "      this.addEventListener('loadend', done);" +
+            "      return originalSend.apply(this, arguments);" +
+            "    };" +
+            "  }" +
+            "  if (w.PerformanceObserver) {" +
+            "    try {" +
+            "      new PerformanceObserver(function (list) {" +
+            "        state.resources += list.getEntries().length; state.last = Date.now();" +
+            "      }).observe({entryTypes: ['resource']});" +
+            "      state.observed = true;" +
+            "    } catch (e) {}" +
+            "  }" +
+            "  if (!state.observed && w.performance && performance.setResourceTimingBufferSize) {" +
+            "    performance.setResourceTimingBufferSize(100000);" +
+            "  }" +
+            "})();";
+
+    private static final String NETWORK_STATE_SCRIPT = NETWORK_COUNTER_SCRIPT +
+            "var w = window;" +
+            "var s = w.__akitaNetwork;" +
+            "if (!s.observed) {" +
+            "  var resources = w.performance && performance.getEntriesByType ? performance.getEntriesByType('resource').length : 0;" +
+            "  if (resources !== s.resources) { s.resources = resources; s.last = Date.now(); }" +
+            "}" +
+            "return [document.readyState, s.pending, Date.now() - s.last," +
+            "  w." + PREVIOUS_DOCUMENT_MARKER + " === w.location.href];";
+
+    private static final Set<ChromeDevToolsService> INSTALLED = Collections.newSetFromMap(
+            Collections.synchronizedMap(new WeakHashMap<>()));
+
+    private PageReadinessWaiter() {
+
+    }
+
+    /**
+     * Помечает документ, открытый в текущем браузере, перед переходом на другую страницу.
+     * Если браузер еще не запущен, он запускается, чтобы счетчик запросов был установлен до первого перехода
+     */
+    public static void markCurrentDocument() {
+        markCurrentDocument(WebDriverRunner.getAndCheckWebDriver());
+    }
+
+    /**
+     * Помечает текущий документ перед переходом, чтобы следующее ожидание готовности дождалось нового документа.
+     * Переход по якорю на той же странице меняет адрес документа и снимает пометку.
+     * В chrome и edge счетчик запросов дополнительно регистрируется для всех новых документов,
+     * поэтому учитываются и запросы, начатые страницей до первой проверки
+     *
+     * @param driver драйвер с поддержкой JavaScript
+     */
+    public static void markCurrentDocument(WebDriver driver) {
+        installOnNewDocuments(driver);
+        try {
+            ((JavascriptExecutor) driver).executeScript(MARK_DOCUMENT_SCRIPT);
+        } catch (WebDriverException e) {
+            log.debug("Не удалось пометить текущий документ: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Регистрирует счетчик запросов через CDP Page.addScriptToEvaluateOnNewDocument: он выполняется в каждом новом
+     * документе до скриптов страницы. Регистрация действует, пока открыто соединение с devTools.
+     * В других браузерах счетчик внедряется при первой проверке, и запросы, начатые до нее, не учитываются
+     */
+    private static void installOnNewDocuments(WebDriver driver) {
+        if (!DevToolsManager.isSupported(driver)) {
+            return;
+        }
+        try {
+            ChromeDevToolsService devTools = DevToolsManager.getDevTools(driver);
+            if (INSTALLED.add(devTools)) {
+                devTools.getPage().addScriptToEvaluateOnNewDocument(NETWORK_COUNTER_SCRIPT);
+            }
+        } catch (RuntimeException e) {
+            log.debug("Не удалось зарегистрировать счетчик запросов через devTools: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ожидает загрузки документа и завершения сетевой активности текущей страницы, например после перехода по ссылке
+     *
+     * @return true, если страница готова, false - если истекло время ожидания
+     */
+    public static boolean waitForPageReady() {
+        return waitFor(getWebDriver(), true, getIdleTime(), getTimeout());
+    }
+
+    /**
+     * Ожидает завершения сетевой активности без проверки загрузки документа,
+     * например после прокрутки страницы, подгружающей содержимое
+     *
+     * @return true, если запросы завершены, false - если истекло время ожидания
+     */
+    public static boolean waitForNetworkIdle() {
+        return waitFor(getWebDriver(), false, getIdleTime(), getNetworkIdleTimeout());
+    }
+
+    /**
+     * Ожидает загрузки документа и завершения сетевой активности страницы
+     *
+     * @param driver   драйвер с поддержкой JavaScript
+     * @param idleTime время без сетевой активности, после которого страница считается готовой
+     * @param timeout  максимальное время ожидания
+     * @return true, если страница готова, false - если истекло время ожидания
+     */
+    public static boolean waitForPageReady(WebDriver driver, Duration idleTime, Duration timeout) {
+        return waitFor(driver, true, idleTime, timeout);
+    }
+
+    private static boolean waitFor(WebDriver driver, boolean requireDocumentComplete, Duration idleTime, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        String lastState = "";
+        boolean previousDocument = false;
+        while (true) {
+            try {
+                List<?> state = (List<?>) ((JavascriptExecutor) driver).executeScript(NETWORK_STATE_SCRIPT);
+                String readyState = String.valueOf(state.get(0));
+                long pending = ((Number) state.get(1)).longValue();
+                long idleMillis = ((Number) state.get(2)).longValue();
+                previousDocument = requireDocumentComplete && Boolean.TRUE.equals(state.get(3));
+                if (previousDocument) {
+                    lastState = "открыт документ, помеченный перед переходом";
+                } else if ((!requireDocumentComplete || "complete".equals(readyState))
+                        && pending == 0 && idleMillis >= idleTime.toMillis()) {
+                    return true;
+                } else {
+                    lastState = String.format("readyState=%s, незавершенных запросов=%d", readyState, pending);
+                }
+            } catch (WebDriverException e) {
+                previousDocument = false;
+                lastState = "документ недоступен: " + e.getMessage();
+            }
+            if (System.nanoTime() >= deadline) {
+                log.warn(String.format("Страница не стала готовой за %d мс (%s)", timeout.toMillis(), lastState));
+                if (previousDocument) {
+                    unmarkCurrentDocument(driver);
+                }
+                return false;
+            }
+            try {
+                Thread.sleep(POLLING_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Снимает пометку, если переход так и не сменил документ, чтобы следующие ожидания на этой странице не зависали
+     */
+    private static void unmarkCurrentDocument(WebDriver driver) {
+        try {
+            ((JavascriptExecutor) driver).executeScript(UNMARK_DOCUMENT_SCRIPT);
+        } catch (WebDriverException e) {
+            log.debug("Не удалось снять пометку документа: " + e.getMessage());
+        }
+    }
+
+    private static Duration getIdleTime() {
+        return getSnapshot().getDuration("pageReadyIdleTime", Duration.ofMillis(500));
+    }
+
+    private static Duration getTimeout() {
+        return getSnapshot().getDuration("pageReadyTimeout", Duration.ofSeconds(10));
+    }
+
+    private static Duration getNetworkIdleTimeout() {
+        return getSnapshot().getDuration("networkIdleTimeout", Duration.ofSeconds(1));
+    }
+}
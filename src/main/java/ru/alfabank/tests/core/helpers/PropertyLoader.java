@@ -21,14 +21,21 @@ import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Класс для получения свойств
@@ -36,8 +43,19 @@ import java.util.Properties;
 @Slf4j
 public class PropertyLoader {
     private static final String PROPERTIES_FILE = "/application.properties";
-    private static final Properties PROPERTIES = getPropertiesInstance();
-    private static final Properties PROFILE_PROPERTIES = getProfilePropertiesInstance();
+    private static final List<Consumer<PropertySnapshot>> CHANGE_LISTENERS = new CopyOnWriteArrayList<>();
+    private static volatile PropertySnapshot snapshot =
+            StartupProfiler.measure("PropertyLoader: загрузка свойств", PropertyLoader::buildSnapshot);
+    private static final FileContentCache FILE_CONTENT_CACHE =
+            new FileContentCache(loadPropertyInt("fileContentCacheMaxSize", 16 * 1024 * 1024));
+
+    private static volatile Path propertiesSourceDir;
+
+    static {
+        if (snapshot.getBoolean("propertiesHotReload", false)) {
+            watchProperties(snapshot.get("propertiesWatchDir"));
+        }
+    }
 
     private PropertyLoader() {
 
@@ -67,8 +85,12 @@ public class PropertyLoader {
      * @return Integer значение свойства по названию или значение по умолчанию
      */
     public static Integer loadSystemPropertyOrDefault(String propertyName, Integer defaultValue) {
+        String value = System.getProperty(propertyName);
+        if (value == null) {
+            return defaultValue;
+        }
         try {
-            return Integer.valueOf(System.getProperty(propertyName, defaultValue.toString()).trim());
+            return Integer.valueOf(value.trim());
         } catch (NumberFormatException ex) {
             log.error("Could not parse value to Integer: " + ex.getMessage());
             return defaultValue;
@@ -139,31 +161,172 @@ public class PropertyLoader {
      * @return значение свойства типа Integer или значение по умолчанию
      */
     public static Integer loadPropertyInt(String propertyName, Integer defaultValue) {
-        String value = tryLoadProperty(propertyName);
-        return value != null ? Integer.parseInt(value) : defaultValue;
+        return Strings.isNullOrEmpty(propertyName) ? defaultValue : snapshot.getInt(propertyName, defaultValue);
     }
 
     /**
-     * Вспомогательный метод, возвращает значение свойства по имени.
-     * Сначала поиск в System переменным,
-     * затем в property-файле, если указано системное свойство "profile"
-     * Если ничего не найдено, поиск в /application.properties
+     * Вспомогательный метод, возвращает значение свойства по имени из снимка конфигурации,
+     * в котором System переменные перекрывают значения из property-файлов, перечисленных в системном свойстве "profile",
+     * а те, в свою очередь, перекрывают значения из /application.properties.
+     * System переменные, заданные после создания снимка, становятся видны после вызова reloadProperties()
      *
      * @param propertyName название свойства
      * @return значение свойства
      */
     public static String tryLoadProperty(String propertyName) {
-        String value = null;
-        if (!Strings.isNullOrEmpty(propertyName)) {
-            String systemProperty = loadSystemPropertyOrDefault(propertyName, propertyName);
-            if (!propertyName.equals(systemProperty)) return systemProperty;
-
-            value = PROFILE_PROPERTIES.getProperty(propertyName);
-            if (null == value) {
-                value = PROPERTIES.getProperty(propertyName);
+        if (Strings.isNullOrEmpty(propertyName)) {
+            return null;
+        }
+        return snapshot.get(propertyName);
+    }
+
+    /**
+     * Возвращает текущий снимок конфигурации с типизированными методами доступа к свойствам
+     *
+     * @return снимок конфигурации
+     */
+    public static PropertySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Пересоздает снимок конфигурации: заново читает application.properties, файлы профилей и System переменные.
+     * Необходимо вызывать после изменения property-файлов, свойства "profile" или других System переменных,
+     * а также чтобы обновить значения, сохраненные слушателями изменений.
+     * После замены снимка вызываются все зарегистрированные слушатели изменений
+     *
+     * @return новый снимок конфигурации
+     */
+    public static synchronized PropertySnapshot reloadProperties() {
+        PropertySnapshot reloaded = buildSnapshot();
+        snapshot = reloaded;
+        for (Consumer<PropertySnapshot> listener : CHANGE_LISTENERS) {
+            try {
+                listener.accept(reloaded);
+            } catch (RuntimeException e) {
+                log.error("Ошибка при обработке изменения свойств: " + e.getMessage(), e);
             }
         }
-        return value;
+        return reloaded;
+    }
+
+    /**
+     * Регистрирует слушателя, вызываемого после каждой замены снимка конфигурации.
+     * Используется для обновления значений, прочитанных из свойств и сохраненных в полях классов
+     *
+     * @param listener слушатель, получает новый снимок конфигурации
+     */
+    public static void addChangeListener(Consumer<PropertySnapshot> listener) {
+        CHANGE_LISTENERS.add(listener);
+    }
+
+    /**
+     * Удаляет слушателя изменений конфигурации
+     *
+     * @param listener ранее зарегистрированный слушатель
+     */
+    public static void removeChangeListener(Consumer<PropertySnapshot> listener) {
+        CHANGE_LISTENERS.remove(listener);
+    }
+
+    /**
+     * Возвращает пути к property-файлам, из которых строится снимок конфигурации:
+     * /application.properties и файлы профилей. Файлы внутри jar-архивов не возвращаются
+     *
+     * @return список путей к файлам
+     */
+    public static List<Path> getPropertyFiles() {
+        List<Path> files = new ArrayList<>();
+        for (String resource : getPropertyResources()) {
+            addPropertyFile(files, PropertyLoader.class.getClassLoader().getResource(resource));
+        }
+        return files;
+    }
+
+    /**
+     * Возвращает property-файлы для отслеживания изменений.
+     * Если директория watchDir не задана, отслеживаются сами файлы из classpath (например, build/resources).
+     * Если задана (свойство propertiesWatchDir, например src/test/resources), отслеживаются исходные файлы
+     * с теми же относительными путями в этой директории
+     *
+     * @param watchDir директория с исходными property-файлами или null
+     * @return отслеживаемые файлы
+     */
+    public static List<Path> getWatchedPropertyFiles(String watchDir) {
+        if (Strings.isNullOrEmpty(watchDir)) {
+            return getPropertyFiles();
+        }
+        List<Path> files = new ArrayList<>();
+        for (String resource : getPropertyResources()) {
+            files.add(Paths.get(watchDir, resource));
+        }
+        return files;
+    }
+
+    /**
+     * Включает отслеживание изменений property-файлов, после каждого изменения снимок конфигурации пересоздается.
+     * Если задана директория watchDir, снимки строятся из исходных файлов этой директории
+     * (файлы, которых в ней нет, по-прежнему читаются из classpath), поэтому правки применяются без сборки проекта.
+     * Исходные файлы читаются как есть, без обработки ресурсов при сборке
+     *
+     * @param watchDir директория с исходными property-файлами или null
+     */
+    public static synchronized void watchProperties(String watchDir) {
+        propertiesSourceDir = Strings.isNullOrEmpty(watchDir) ? null : Paths.get(watchDir);
+        PropertyWatcher.start(getWatchedPropertyFiles(watchDir));
+    }
+
+    /**
+     * Останавливает отслеживание изменений property-файлов и возвращает чтение свойств из classpath
+     */
+    public static synchronized void stopWatchingProperties() {
+        PropertyWatcher.stop();
+        if (propertiesSourceDir != null) {
+            propertiesSourceDir = null;
+            reloadProperties();
+        }
+    }
+
+    /**
+     * Вспомогательный метод, возвращает имена ресурсов property-файлов: application.properties и файлы профилей
+     *
+     * @return список имен ресурсов
+     */
+    private static List<String> getPropertyResources() {
+        List<String> resources = new ArrayList<>();
+        resources.add(PROPERTIES_FILE.substring(1));
+        resources.addAll(getProfiles());
+        return resources;
+    }
+
+    private static void addPropertyFile(List<Path> files, URL url) {
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return;
+        }
+        try {
+            files.add(Paths.get(url.toURI()));
+        } catch (URISyntaxException e) {
+            log.warn("Не удалось получить путь к файлу свойств " + url);
+        }
+    }
+
+    /**
+     * Вспомогательный метод, объединяет свойства из /application.properties, файлов профилей
+     * и System переменные в один снимок конфигурации. Снимок хранит итоговые значения в одной хеш-таблице,
+     * поэтому поиск свойства не зависит от количества профилей
+     *
+     * @return снимок конфигурации
+     */
+    private static PropertySnapshot buildSnapshot() {
+        Map<String, String> values = new HashMap<>();
+        putAll(values, getPropertiesInstance());
+        putAll(values, getProfilePropertiesInstance());
+        putAll(values, System.getProperties());
+        return new PropertySnapshot(values);
+    }
+
+    private static void putAll(Map<String, String> values, Properties properties) {
+        properties.stringPropertyNames().forEach(name -> values.put(name, properties.getProperty(name)));
     }
 
     /**
@@ -175,7 +338,7 @@ public class PropertyLoader {
     private static Properties getPropertiesInstance() {
         Properties instance = new Properties();
         try (
-                InputStream resourceStream = PropertyLoader.class.getResourceAsStream(PROPERTIES_FILE);
+                InputStream resourceStream = openPropertyResource(PROPERTIES_FILE.substring(1));
                 InputStreamReader inputStream =
                         new InputStreamReader(Objects.requireNonNull(resourceStream), StandardCharsets.UTF_8)
         ) {
@@ -185,22 +348,24 @@ public class PropertyLoader {
     }
 
     /**
-     * Вспомогательный метод, возвращает свойства из кастомного application.properties по пути
-     * из системного свойства "profile"
+     * Вспомогательный метод, возвращает свойства из файлов профилей, перечисленных через запятую
+     * в системном свойстве "profile", например -Dprofile=base,stage,chrome.
+     * Файлы объединяются по порядку, свойства следующего профиля перекрывают свойства предыдущих
      *
-     * @return прочитанные свойства из кастомного файла application.properties,
+     * @return объединенные свойства из файлов профилей,
      * если свойство "profile" указано,
      * иначе пустой объект
      */
     @SneakyThrows(IOException.class)
     private static Properties getProfilePropertiesInstance() {
         Properties instance = new Properties();
-        String profile = System.getProperty("profile", "");
-        if (!Strings.isNullOrEmpty(profile)) {
-            String path = Paths.get(profile).toString();
-            URL url = PropertyLoader.class.getClassLoader().getResource(path);
+        for (String profile : getProfiles()) {
+            InputStream profileStream = openPropertyResource(profile);
+            if (profileStream == null) {
+                throw new IllegalArgumentException("Не найден файл профиля: " + profile);
+            }
             try (
-                    InputStream resourceStream = Objects.requireNonNull(url).openStream();
+                    InputStream resourceStream = profileStream;
                     InputStreamReader inputStream = new InputStreamReader(resourceStream, StandardCharsets.UTF_8)
             ) {
                 instance.load(inputStream);
@@ -209,9 +374,43 @@ public class PropertyLoader {
         return instance;
     }
 
+    /**
+     * Вспомогательный метод, открывает property-файл из директории исходных файлов, если она задана и файл в ней есть,
+     * иначе из classpath
+     *
+     * @param resource имя ресурса
+     * @return поток с содержимым файла или null, если файл не найден
+     */
+    private static InputStream openPropertyResource(String resource) throws IOException {
+        Path sourceDir = propertiesSourceDir;
+        if (sourceDir != null) {
+            Path source = sourceDir.resolve(resource);
+            if (Files.isRegularFile(source)) {
+                return Files.newInputStream(source);
+            }
+        }
+        return PropertyLoader.class.getClassLoader().getResourceAsStream(resource);
+    }
+
+    /**
+     * Вспомогательный метод, возвращает пути к файлам профилей из системного свойства "profile" в порядке объединения
+     *
+     * @return список путей к файлам профилей
+     */
+    private static List<String> getProfiles() {
+        List<String> profiles = new ArrayList<>();
+        for (String profile : System.getProperty("profile", "").split(",")) {
+            if (!profile.trim().isEmpty()) {
+                profiles.add(Paths.get(profile.trim()).toString());
+            }
+        }
+        return profiles;
+    }
+
     /**
      * Получает значение из application.properties, файла по переданному пути, значение из хранилища переменных или как String аргумент
-     * Используется для получение body.json api шагах, либо для получения script.js в ui шагах
+     * Используется для получение body.json api шагах, либо для получения script.js в ui шагах.
+     * Содержимое файлов кэшируется до изменения файла, размер кэша в байтах задается свойством fileContentCacheMaxSize
      *
      * @param valueToFind - ключ к значению в application.properties, путь к файлу c нужным значением, значение как String
      * @return значение как String
@@ -220,14 +419,14 @@ public class PropertyLoader {
         String pathAsString = StringUtils.EMPTY;
         String propertyValue = tryLoadProperty(valueToFind);
         if (StringUtils.isNotBlank(propertyValue)) {
-            AkitaScenario.getInstance().write("Значение переменной " + valueToFind + " из application.properties = " + propertyValue);
+            AkitaScenario.getInstance().write(() -> "Значение переменной " + valueToFind + " из application.properties = " + propertyValue);
             return propertyValue;
         }
         try {
             Path path = Paths.get(System.getProperty("user.dir") + valueToFind);
             pathAsString = path.toString();
-            String fileValue = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
-            AkitaScenario.getInstance().write("Значение из файла " + valueToFind + " = " + fileValue);
+            String fileValue = FILE_CONTENT_CACHE.read(path);
+            AkitaScenario.getInstance().write(() -> "Значение из файла " + valueToFind + " = " + fileValue);
             return fileValue;
         } catch (IOException | InvalidPathException e) {
             AkitaScenario.getInstance().write("Значение не найдено по пути " + pathAsString);
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.helpers;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Неизменяемый снимок конфигурации: свойства из application.properties, профиля и системные свойства JVM,
+ * объединенные в одну таблицу при создании снимка.
+ * Чтение не требует блокировок, типизированные значения разбираются один раз и кэшируются
+ */
+public final class PropertySnapshot {
+
+    private static final Object MISSING = new Object();
+
+    private final Map<String, String> values;
+    private final Map<String, Object> intValues = new ConcurrentHashMap<>();
+    private final Map<String, Object> booleanValues = new ConcurrentHashMap<>();
+    private final Map<String, Object> durationValues = new ConcurrentHashMap<>();
+    private final Map<String, Object> listValues = new ConcurrentHashMap<>();
+
+    /**
+     * @param values значения свойств, копируются при создании снимка
+     */
+    public PropertySnapshot(Map<String, String> values) {
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+    }
+
+    /**
+     * Возвращает значение свойства или null, если свойство не задано
+     */
+    public String get(String propertyName) {
+        return values.get(propertyName);
+    }
+
+    /**
+     * Возвращает значение свойства или значение по умолчанию, если свойство не задано
+     */
+    public String get(String propertyName, String defaultValue) {
+        String value = values.get(propertyName);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Проверяет, задано ли свойство в снимке
+     */
+    public boolean contains(String propertyName) {
+        return values.containsKey(propertyName);
+    }
+
+    /**
+     * Возвращает Integer значение свойства или значение по умолчанию, если свойство не задано
+     *
+     * @throws NumberFormatException если значение свойства не является числом
+     */
+    public Integer getInt(String propertyName, Integer defaultValue) {
+        return getParsed(intValues, propertyName, value -> Integer.valueOf(value.trim()), defaultValue);
+    }
+
+    /**
+     * Возвращает Boolean значение свойства или значение по умолчанию, если свойство не задано
+     */
+    public Boolean getBoolean(String propertyName, Boolean defaultValue) {
+        return getParsed(booleanValues, propertyName, value -> Boolean.parseBoolean(value.trim()), defaultValue);
+    }
+
+    /**
+     * Возвращает значение свойства в виде длительности или значение по умолчанию, если свойство не задано.
+     * Поддерживаются значения в миллисекундах ("500"), с единицами измерения ("500ms", "5s", "2m", "1h")
+     * и в формате ISO-8601 ("PT5S")
+     *
+     * @throws IllegalArgumentException если значение свойства не является длительностью
+     */
+    public Duration getDuration(String propertyName, Duration defaultValue) {
+        return getParsed(durationValues, propertyName, PropertySnapshot::parseDuration, defaultValue);
+    }
+
+    /**
+     * Возвращает значение свойства в виде списка значений, разделенных запятой,
+     * или значение по умолчанию, если свойство не задано. Пустые элементы списка отбрасываются
+     */
+    public List<String> getList(String propertyName, List<String> defaultValue) {
+        return getParsed(listValues, propertyName, value -> Collections.unmodifiableList(Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .collect(toList())), defaultValue);
+    }
+
+    /**
+     * Возвращает все свойства снимка
+     */
+    public Map<String, String> asMap() {
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getParsed(Map<String, Object> parsedValues, String propertyName, Function<String, T> parser, T defaultValue) {
+        Object parsed = parsedValues.get(propertyName);
+        if (parsed == null) {
+            String value = values.get(propertyName);
+            parsed = value == null ? MISSING : parser.apply(value);
+            parsedValues.put(propertyName, parsed);
+        }
+        return parsed == MISSING ? defaultValue : (T) parsed;
+    }
+
+    private static Duration parseDuration(String value) {
+        String duration = value.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (duration.startsWith("p")) {
+                return Duration.parse(duration.toUpperCase(Locale.ROOT));
+            }
+            if (duration.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(duration.substring(0, duration.length() - 2).trim()));
+            }
+            String amount = duration.substring(0, duration.length() - 1).trim();
+            switch (duration.charAt(duration.length() - 1)) {
+                case 's':
+                    return Duration.ofSeconds(Long.parseLong(amount));
+                case 'm':
+                    return Duration.ofMinutes(Long.parseLong(amount));
+                case 'h':
+                    return Duration.ofHours(Long.parseLong(amount));
+                default:
+                    return Duration.ofMillis(Long.parseLong(duration));
+            }
+        } catch (NumberFormatException | DateTimeParseException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Не удалось разобрать длительность: " + value, e);
+        }
+    }
+}
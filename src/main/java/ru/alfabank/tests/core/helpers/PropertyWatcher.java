@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.helpers;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Отслеживает изменения property-файлов и пересоздает снимок конфигурации PropertyLoader.
+ * Включается свойством propertiesHotReload=true. По умолчанию отслеживаются файлы из classpath
+ * (например, build/resources), которые обновляются только при сборке проекта.
+ * Чтобы подхватывать правки исходных файлов, задайте свойство propertiesWatchDir
+ * (например, propertiesWatchDir=src/test/resources): тогда снимок строится из файлов этой директории,
+ * см. PropertyLoader.watchProperties.
+ * Несколько событий изменения, пришедших подряд, приводят к одной перезагрузке свойств.
+ * Если перезагрузка не удалась, например файл сохранен не полностью, остается предыдущий снимок,
+ * а отслеживание продолжается
+ */
+@Slf4j
+public final class PropertyWatcher {
+
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    private static WatchService watchService;
+
+    private PropertyWatcher() {
+
+    }
+
+    /**
+     * Запускает отслеживание изменений файлов в фоновом потоке, повторный вызов перезапускает отслеживание
+     *
+     * @param files отслеживаемые property-файлы
+     */
+    public static synchronized void start(Collection<Path> files) {
+        stop();
+        Set<Path> watchedFiles = new HashSet<>();
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            watchService = service;
+            for (Path file : files) {
+                Path absolute = file.toAbsolutePath().normalize();
+                absolute.getParent().register(service, ENTRY_MODIFY, ENTRY_CREATE);
+                watchedFiles.add(absolute);
+            }
+        } catch (IOException e) {
+            log.error("Не удалось запустить отслеживание файлов свойств: " + e.getMessage(), e);
+            stop();
+            return;
+        }
+        Thread thread = new Thread(() -> watch(service, watchedFiles), "akita-property-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Отслеживаются изменения файлов свойств: " + watchedFiles);
+    }
+
+    /**
+     * Останавливает отслеживание изменений файлов
+     */
+    public static synchronized void stop() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Ошибка при остановке отслеживания файлов свойств: " + e.getMessage());
+        }
+        watchService = null;
+    }
+
+    private static void watch(WatchService service, Set<Path> watchedFiles) {
+        try {
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                collectChangedFiles(service.take(), watchedFiles, changed);
+                if (!changed.isEmpty()) {
+                    Thread.sleep(DEBOUNCE_MILLIS);
+                    WatchKey next;
+                    while ((next = service.poll()) != null) {
+                        collectChangedFiles(next, watchedFiles, changed);
+                    }
+                    reload(changed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // отслеживание остановлено
+        }
+    }
+
+    private static void reload(Set<Path> changed) {
+        try {
+            PropertyLoader.reloadProperties();
+            log.info("Свойства перечитаны после изменения файлов: " + changed);
+        } catch (RuntimeException e) {
+            log.error("Не удалось перечитать свойства после изменения файлов " + changed
+                    + ", используются прежние значения: " + e.getMessage(), e);
+        }
+    }
+
+    private static void collectChangedFiles(WatchKey key, Set<Path> watchedFiles, Set<Path> changed) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path) {
+                Path file = dir.resolve((Path) event.context());
+                if (watchedFiles.contains(file)) {
+                    changed.add(file);
+                }
+            }
+        }
+        key.reset();
+    }
+}
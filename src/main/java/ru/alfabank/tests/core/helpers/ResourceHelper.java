@@ -1,12 +1,28 @@
 package ru.alfabank.tests.core.helpers;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 public class ResourceHelper {
 
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Получить файл по относительному пути ресурса
      *
@@ -30,4 +46,76 @@ public class ResourceHelper {
         }
         return null;
     }
+
+    /**
+     * Находит файл по пути относительно директории проекта, а если его нет - по относительному пути ресурса
+     *
+     * @param pathOrResource путь относительно директории проекта, например "/src/test/resources/body.json",
+     *                       или относительный путь ресурса, например "body.json"
+     * @return путь к файлу
+     * @throws FileNotFoundException если файл не найден
+     */
+    public static Path resolvePath(String pathOrResource) throws FileNotFoundException {
+        Path path = Paths.get(System.getProperty("user.dir") + pathOrResource);
+        if (Files.isRegularFile(path)) {
+            return path;
+        }
+        URL resourceUrl = Thread.currentThread().getContextClassLoader().getResource(pathOrResource);
+        if (resourceUrl != null && "file".equals(resourceUrl.getProtocol())) {
+            try {
+                return Paths.get(resourceUrl.toURI());
+            } catch (URISyntaxException e) {
+                throw new FileNotFoundException(pathOrResource + ": " + e.getMessage());
+            }
+        }
+        throw new FileNotFoundException(
+                String.format("Could not find the data file: %s, specify a valid path.", pathOrResource));
+    }
+
+    /**
+     * Открывает буферизованный поток чтения файла, вызывающий код обязан закрыть поток
+     *
+     * @param path путь к файлу
+     * @return поток с содержимым файла
+     */
+    public static InputStream openStream(Path path) throws IOException {
+        return new BufferedInputStream(Files.newInputStream(path));
+    }
+
+    /**
+     * Возвращает содержимое файла в кодировке UTF-8 как последовательность символов.
+     * Файл читается через канал блоками фиксированного размера и декодируется сразу в буфер символов,
+     * без промежуточных массива байтов и строки. Файл закрывается до возврата результата и не остается
+     * заблокированным, некорректные последовательности байтов заменяются символом U+FFFD
+     *
+     * @param path путь к файлу, размером не более 2 ГБ
+     * @return содержимое файла
+     */
+    public static CharSequence readAsCharSequence(Path path) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Файл " + path + " больше 2 ГБ");
+            }
+            // в UTF-8 символов не больше, чем байтов
+            CharBuffer chars = CharBuffer.allocate((int) size);
+            ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) == -1;
+                bytes.flip();
+                CoderResult result = decoder.decode(bytes, chars, endOfInput);
+                if (result.isOverflow()) {
+                    throw new IOException("Файл " + path + " изменился во время чтения");
+                }
+                bytes.compact();
+            }
+            decoder.flush(chars);
+            chars.flip();
+            return chars;
+        }
+    }
 }
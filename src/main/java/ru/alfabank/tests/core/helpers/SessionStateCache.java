@@ -0,0 +1,194 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.helpers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.alfabank.tests.core.helpers.PropertyLoader.getSnapshot;
+import static ru.alfabank.tests.core.helpers.PropertyLoader.loadSystemPropertyOrDefault;
+
+/**
+ * Кэш состояния авторизованной сессии по коду пользователя, позволяющий не выполнять вход через UI в каждом сценарии.
+ * Включается свойством sessionStateCache=true.
+ * <p>
+ * После первого входа пользователя сохраняются cookies, localStorage и sessionStorage текущего сайта.
+ * В следующих сценариях состояние переносится в браузер напрямую и страница обновляется.
+ * Сохраненное состояние действует sessionStateCacheTtl (по умолчанию 30m) и удаляется,
+ * если сайт не принял восстановленную сессию - тогда вход выполняется через UI и состояние сохраняется заново
+ */
+@Slf4j
+public class SessionStateCache {
+
+    public static final String SESSION_STATE_CACHE = "sessionStateCache";
+
+    private static final String CAPTURE_STORAGE_SCRIPT =
+            "function read(storage) {" +
+            "  var values = {};" +
+            "  for (var i = 0; i < storage.length; i++) { var key = storage.key(i); values[key] = storage.getItem(key); }" +
+            "  return values;" +
+            "}" +
+            "return [read(window.localStorage), read(window.sessionStorage)];";
+    private static final String RESTORE_STORAGE_SCRIPT =
+            "var local = arguments[0], session = arguments[1];" +
+            "for (var key in local) { window.localStorage.setItem(key, local[key]); }" +
+            "for (var key in session) { window.sessionStorage.setItem(key, session[key]); }";
+
+    private final Duration ttl;
+    private final Map<String, SessionState> states = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttl время, в течение которого сохраненное состояние считается действительным
+     */
+    public SessionStateCache(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Возвращает общий кэш, настроенный свойством sessionStateCacheTtl
+     */
+    public static SessionStateCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Проверяет, включен ли кэш свойством sessionStateCache
+     */
+    public static boolean isEnabled() {
+        return loadSystemPropertyOrDefault(SESSION_STATE_CACHE, false);
+    }
+
+    /**
+     * Сохраняет cookies, localStorage и sessionStorage сайта, открытого в браузере, для заданного пользователя
+     *
+     * @param userCode код пользователя
+     * @param driver   драйвер с выполненным входом
+     */
+    @SuppressWarnings("unchecked")
+    public void capture(String userCode, WebDriver driver) {
+        try {
+            List<Object> storages = (List<Object>) ((JavascriptExecutor) driver).executeScript(CAPTURE_STORAGE_SCRIPT);
+            SessionState state = new SessionState(getOrigin(driver.getCurrentUrl()),
+                    new HashSet<>(driver.manage().getCookies()),
+                    toStringMap((Map<String, Object>) storages.get(0)),
+                    toStringMap((Map<String, Object>) storages.get(1)));
+            states.put(userCode, state);
+            log.info("Сохранено состояние сессии пользователя " + userCode);
+        } catch (WebDriverException | ClassCastException e) {
+            log.warn("Не удалось сохранить состояние сессии пользователя " + userCode + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Переносит сохраненное состояние пользователя в браузер и обновляет страницу.
+     * Состояние переносится только если в браузере открыт тот же сайт, на котором оно было сохранено
+     *
+     * @param userCode код пользователя
+     * @param driver   драйвер, в котором открыт сайт
+     * @return true, если состояние перенесено; проверка того, что сайт принял сессию, остается за вызывающим
+     */
+    public boolean restore(String userCode, WebDriver driver) {
+        SessionState state = states.get(userCode);
+        if (state == null) {
+            return false;
+        }
+        if (System.nanoTime() - state.capturedAt > ttl.toNanos()) {
+            invalidate(userCode);
+            return false;
+        }
+        try {
+            if (!state.origin.equals(getOrigin(driver.getCurrentUrl()))) {
+                return false;
+            }
+            for (Cookie cookie : state.cookies) {
+                try {
+                    driver.manage().addCookie(cookie);
+                } catch (WebDriverException e) {
+                    log.debug("Cookie " + cookie.getName() + " не восстановлена: " + e.getMessage());
+                }
+            }
+            ((JavascriptExecutor) driver).executeScript(RESTORE_STORAGE_SCRIPT, state.localStorage, state.sessionStorage);
+            PageReadinessWaiter.markCurrentDocument(driver);
+            driver.navigate().refresh();
+            log.info("Восстановлено состояние сессии пользователя " + userCode);
+            return true;
+        } catch (WebDriverException e) {
+            log.warn("Не удалось восстановить состояние сессии пользователя " + userCode + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Удаляет сохраненное состояние пользователя, например если сайт не принял восстановленную сессию
+     */
+    public void invalidate(String userCode) {
+        if (states.remove(userCode) != null) {
+            log.info("Удалено сохраненное состояние сессии пользователя " + userCode);
+        }
+    }
+
+    /**
+     * Удаляет сохраненные состояния всех пользователей
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    private static String getOrigin(String url) {
+        try {
+            URI uri = URI.create(url);
+            return uri.getScheme() + "://" + uri.getAuthority();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private static Map<String, String> toStringMap(Map<String, Object> values) {
+        Map<String, String> result = new HashMap<>();
+        values.forEach((key, value) -> result.put(key, String.valueOf(value)));
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static final class SessionState {
+        private final String origin;
+        private final Set<Cookie> cookies;
+        private final Map<String, String> localStorage;
+        private final Map<String, String> sessionStorage;
+        private final long capturedAt = System.nanoTime();
+
+        private SessionState(String origin, Set<Cookie> cookies, Map<String, String> localStorage, Map<String, String> sessionStorage) {
+            this.origin = origin;
+            this.cookies = Collections.unmodifiableSet(cookies);
+            this.localStorage = localStorage;
+            this.sessionStorage = sessionStorage;
+        }
+    }
+
+    private static final class Holder {
+        private static final SessionStateCache INSTANCE = new SessionStateCache(
+                getSnapshot().getDuration("sessionStateCacheTtl", Duration.ofMinutes(30)));
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.tests.core.helpers;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Профилировщик запуска фреймворка: замеряет время и объем памяти, выделенной текущим потоком,
+ * для этапов инициализации (статические поля, загрузка свойств, сканирование классов, первое создание драйвера).
+ * Для каждого этапа сохраняется только первый замер.
+ * Включается системным свойством -DstartupProfiling=true (не через PropertyLoader, так как
+ * загрузка свойств сама является замеряемым этапом). Сводка выводится в лог перед первым сценарием,
+ * этапы, завершившиеся позже, выводятся в лог по мере завершения
+ */
+@Slf4j
+public final class StartupProfiler {
+
+    private static final Map<String, Phase> PHASES = new LinkedHashMap<>();
+    private static final ThreadLocal<Integer> DEPTH = ThreadLocal.withInitial(() -> 0);
+
+    private static volatile boolean enabled = Boolean.getBoolean("startupProfiling");
+    private static boolean reported;
+
+    private StartupProfiler() {
+
+    }
+
+    /**
+     * Выполняет этап инициализации и, если профилирование включено, замеряет его
+     *
+     * @param name     название этапа
+     * @param supplier код этапа
+     * @return результат выполнения этапа
+     */
+    public static <T> T measure(String name, Supplier<T> supplier) {
+        Phase phase = enabled ? startPhase(name) : null;
+        if (phase == null) {
+            return supplier.get();
+        }
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            long duration = System.nanoTime() - startTime;
+            long allocated = allocatedBefore < 0 ? -1 : getAllocatedBytes() - allocatedBefore;
+            DEPTH.set(phase.depth);
+            finishPhase(phase, duration, allocated);
+        }
+    }
+
+    /**
+     * Выводит в лог сводку по уже завершенным этапам, повторные вызовы игнорируются
+     */
+    public static void report() {
+        synchronized (PHASES) {
+            if (!enabled || reported) {
+                return;
+            }
+            reported = true;
+        }
+        log.info(getReport());
+    }
+
+    /**
+     * Возвращает сводку по завершенным этапам инициализации
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder("Этапы запуска фреймворка:");
+        synchronized (PHASES) {
+            PHASES.values().stream()
+                    .filter(phase -> phase.duration >= 0)
+                    .forEach(phase -> report.append('\n').append(phase));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Включает или выключает профилирование
+     */
+    public static void setEnabled(boolean enabled) {
+        StartupProfiler.enabled = enabled;
+    }
+
+    /**
+     * Регистрирует этап в момент начала, чтобы вложенные этапы выводились в сводке после родительского
+     */
+    private static Phase startPhase(String name) {
+        int depth = DEPTH.get();
+        Phase phase = new Phase(name, depth);
+        synchronized (PHASES) {
+            if (PHASES.putIfAbsent(name, phase) != null) {
+                return null;
+            }
+        }
+        DEPTH.set(depth + 1);
+        return phase;
+    }
+
+    private static void finishPhase(Phase phase, long duration, long allocated) {
+        boolean logNow;
+        synchronized (PHASES) {
+            phase.duration = duration;
+            phase.allocated = allocated;
+            logNow = reported;
+        }
+        if (logNow) {
+            log.info("Этап запуска фреймворка:\n" + phase);
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static final class Phase {
+        private final String name;
+        private final int depth;
+        private long duration = -1;
+        private long allocated = -1;
+
+        private Phase(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                line.append("  ");
+            }
+            line.append(name).append(": ").append(TimeUnit.NANOSECONDS.toMillis(duration)).append(" мс");
+            if (allocated >= 0) {
+                line.append(", ").append(allocated / 1024).append(" КБ");
+            }
+            return line.toString();
+        }
+    }
+}
@@ -13,9 +13,10 @@
 package ru.alfabank.tests.core.rest;
 
 /**
- * Параметры для формирования http запроса
+ * Параметры для формирования http запроса.
+ * BODY_FILE - тело запроса передается из файла потоком, без чтения файла в память
  */
 
 public enum RequestParamType {
-    PARAMETER, HEADER, BODY
+    PARAMETER, HEADER, BODY, BODY_FILE
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import org.junit.jupiter.api.Test;
+import ru.alfabank.tests.core.helpers.AttachmentStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+public class AttachmentStoreTests {
+
+    @Test
+    void storeUsesContentHashAsFileName() throws IOException {
+        byte[] data = "attachment".getBytes(StandardCharsets.UTF_8);
+        Path attachment = AttachmentStore.store(data, "text/plain");
+        assertThat(attachment.getFileName().toString(),
+                equalTo("602a5e69c3021bdbd3d25156a02d2cbb467605b8203248eea6af3fb42168d663.txt"));
+        assertThat(Files.readAllBytes(attachment), equalTo(data));
+        assertThat(attachment.getParent(), equalTo(AttachmentStore.getRunDir()));
+    }
+
+    @Test
+    void sameContentStoredOnce() {
+        Path first = AttachmentStore.store("same".getBytes(StandardCharsets.UTF_8), "application/json");
+        Path second = AttachmentStore.store("same".getBytes(StandardCharsets.UTF_8), "application/json");
+        Path other = AttachmentStore.store("other".getBytes(StandardCharsets.UTF_8), "application/json");
+        assertThat(second, equalTo(first));
+        assertThat(other, not(equalTo(first)));
+    }
+}
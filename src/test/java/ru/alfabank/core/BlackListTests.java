@@ -18,12 +18,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.alfabank.tests.core.helpers.BlackList;
 import ru.alfabank.tests.core.helpers.BlackListManager;
+import ru.alfabank.tests.core.helpers.ResourceHelper;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.beans.SamePropertyValuesAs.samePropertyValuesAs;
 
 public class BlackListTests {
@@ -54,6 +60,22 @@ public class BlackListTests {
         assertThat(newEntries, samePropertyValuesAs(blackList.getBlacklistEntries()));
     }
 
+    @Test
+    void testReadAsCharSequenceDecodesUtf8File() throws IOException {
+        Path file = Files.createTempFile("akita-blacklist", ".txt");
+        try {
+            String text = "адрес: ads.example.com 403";
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            CharSequence content = ResourceHelper.readAsCharSequence(file);
+            assertThat(content.length(), equalTo(text.length()));
+            assertThat(content.toString(), equalTo(text));
+            int start = text.indexOf("ads.");
+            assertThat(content.subSequence(start, content.length()).toString(), equalTo("ads.example.com 403"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     @BeforeEach
     void initBlackList() {
         new BlackListManager("blacklist").fillBlackList(DEFAULT_BLACKLIST_ENTRIES);
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import com.github.kklisura.cdt.services.ChromeDevToolsService;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.WebDriverException;
+import ru.alfabank.tests.core.drivers.DevToolsManager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+public class DevToolsManagerTests {
+
+    @Test
+    void pipelinedCommandsSentWithoutWaitingForEachOther() {
+        ChromeDevToolsService devTools = mock(ChromeDevToolsService.class);
+        CountDownLatch inFlight = new CountDownLatch(2);
+        DevToolsManager.pipeline(devTools,
+                service -> awaitOther(inFlight),
+                service -> awaitOther(inFlight));
+        assertThat(inFlight.getCount(), equalTo(0L));
+    }
+
+    @Test
+    void pipelineFailsWhenCommandFails() {
+        ChromeDevToolsService devTools = mock(ChromeDevToolsService.class);
+        WebDriverException exception = assertThrows(WebDriverException.class, () ->
+                DevToolsManager.pipeline(devTools,
+                        service -> {
+                        },
+                        service -> {
+                            throw new IllegalStateException("Target closed");
+                        }));
+        assertThat(exception.getCause().getMessage(), equalTo("Target closed"));
+    }
+
+    private static void awaitOther(CountDownLatch inFlight) {
+        inFlight.countDown();
+        try {
+            if (!inFlight.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Команды выполняются последовательно");
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
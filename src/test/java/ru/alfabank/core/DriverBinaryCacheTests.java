@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import io.github.bonigarcia.wdm.config.DriverManagerType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.WebDriverException;
+import ru.alfabank.tests.core.drivers.DriverBinaryCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DriverBinaryCacheTests {
+
+    private Path dir;
+    private Path driver;
+    private final AtomicInteger resolutions = new AtomicInteger();
+    private String previousProperty;
+    private String browserVersion = "99";
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("akita-driver-cache");
+        driver = Files.createFile(dir.resolve("chromedriver"));
+        driver.toFile().setExecutable(true);
+        previousProperty = System.getProperty("webdriver.chrome.driver");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (previousProperty == null) {
+            System.clearProperty("webdriver.chrome.driver");
+        } else {
+            System.setProperty("webdriver.chrome.driver", previousProperty);
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private BiFunction<DriverManagerType, String, DriverBinaryCache.Binary> resolver() {
+        return (type, browserVersion) -> {
+            resolutions.incrementAndGet();
+            return new DriverBinaryCache.Binary(browserVersion + ".0", driver.toString(), 0);
+        };
+    }
+
+    private DriverBinaryCache newCache(boolean offline) {
+        return new DriverBinaryCache(dir, Duration.ofDays(1), offline, type -> browserVersion, resolver());
+    }
+
+    @Test
+    void versionResolvedOncePerJvm() {
+        DriverBinaryCache cache = newCache(false);
+        assertThat(cache.setup(DriverManagerType.CHROME), equalTo(driver.toString()));
+        cache.setup(DriverManagerType.CHROME);
+        assertThat(resolutions.get(), equalTo(1));
+        assertThat(System.getProperty("webdriver.chrome.driver"), equalTo(driver.toString()));
+    }
+
+    @Test
+    void nextRunTakesDriverFromManifest() {
+        newCache(false).setup(DriverManagerType.CHROME);
+        DriverBinaryCache nextRun = newCache(true);
+        assertThat(nextRun.setup(DriverManagerType.CHROME), equalTo(driver.toString()));
+        assertThat(resolutions.get(), equalTo(1));
+    }
+
+    @Test
+    void offlineRunFailsWithoutManifest() {
+        DriverBinaryCache cache = newCache(true);
+        assertThrows(WebDriverException.class, () -> cache.setup(DriverManagerType.FIREFOX));
+        assertThat(resolutions.get(), equalTo(0));
+    }
+
+    @Test
+    void browserUpdateResolvesDriverForNewVersion() {
+        newCache(false).setup(DriverManagerType.CHROME);
+        browserVersion = "100";
+        newCache(false).setup(DriverManagerType.CHROME);
+        assertThat(resolutions.get(), equalTo(2));
+        browserVersion = "99";
+        newCache(true).setup(DriverManagerType.CHROME);
+        assertThat(resolutions.get(), equalTo(2));
+    }
+
+    @Test
+    void versionMismatchInvalidatesManifestEntry() {
+        newCache(false).setup(DriverManagerType.CHROME);
+        DriverBinaryCache cache = newCache(false);
+        AtomicInteger sessions = new AtomicInteger();
+        String session = cache.createDriver(DriverManagerType.CHROME, () -> {
+            if (sessions.incrementAndGet() == 1) {
+                throw new SessionNotCreatedException("This version of ChromeDriver only supports Chrome version 99");
+            }
+            return "session";
+        });
+        assertThat(session, equalTo("session"));
+        assertThat(sessions.get(), equalTo(2));
+        assertThat(resolutions.get(), equalTo(2));
+    }
+
+    @Test
+    void otherSessionErrorsAreNotRetried() {
+        DriverBinaryCache cache = newCache(false);
+        assertThrows(SessionNotCreatedException.class, () -> cache.createDriver(DriverManagerType.CHROME, () -> {
+            throw new SessionNotCreatedException("Chrome failed to start: exited abnormally");
+        }));
+        assertThat(resolutions.get(), equalTo(1));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.alfabank.tests.core.helpers.FileContentCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class FileContentCacheTests {
+
+    private Path dir;
+
+    @BeforeEach
+    void createTempDir() throws IOException {
+        dir = Files.createTempDirectory("akita-file-cache");
+    }
+
+    @AfterEach
+    void deleteTempDir() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void changedFileIsReadAgain() throws IOException {
+        FileContentCache cache = new FileContentCache(1024);
+        Path file = write("body.json", "{}");
+        assertThat(cache.read(file), equalTo("{}"));
+        write("body.json", "{\"a\":1}");
+        assertThat(cache.read(file), equalTo("{\"a\":1}"));
+        assertThat(cache.size(), equalTo(1));
+        assertThat(cache.getCurrentSize(), equalTo(7L));
+    }
+
+    @Test
+    void leastRecentlyUsedFileEvicted() throws IOException {
+        FileContentCache cache = new FileContentCache(10);
+        Path first = write("first", "12345");
+        Path second = write("second", "12345");
+        Path third = write("third", "12345");
+        cache.read(first);
+        cache.read(second);
+        cache.read(first);
+        cache.read(third);
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.getCurrentSize(), equalTo(10L));
+    }
+
+    @Test
+    void fileLargerThanLimitNotCached() throws IOException {
+        FileContentCache cache = new FileContentCache(3);
+        assertThat(cache.read(write("large", "12345")), equalTo("12345"));
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import ru.alfabank.tests.core.helpers.PageReadinessWaiter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PageReadinessWaiterTests {
+
+    private static WebDriver mockDriver() {
+        return mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+    }
+
+    @Test
+    void readyAfterDocumentLoadedAndNetworkIdle() {
+        WebDriver driver = mockDriver();
+        when(((JavascriptExecutor) driver).executeScript(anyString()))
+                .thenThrow(new WebDriverException("document unloaded while waiting for result"))
+                .thenReturn(Arrays.asList("loading", 0L, 1000L, false))
+                .thenReturn(Arrays.asList("complete", 2L, 0L, false))
+                .thenReturn(Arrays.asList("complete", 0L, 100L, false))
+                .thenReturn(Arrays.asList("complete", 0L, 600L, false));
+
+        boolean ready = PageReadinessWaiter.waitForPageReady(driver, Duration.ofMillis(500), Duration.ofSeconds(10));
+        assertThat(ready, equalTo(true));
+        verify((JavascriptExecutor) driver, times(5)).executeScript(anyString());
+    }
+
+    @Test
+    void notReadyWhenRequestsNeverFinish() {
+        WebDriver driver = mockDriver();
+        when(((JavascriptExecutor) driver).executeScript(anyString()))
+                .thenReturn(Arrays.asList("complete", 1L, 5000L, false));
+
+        boolean ready = PageReadinessWaiter.waitForPageReady(driver, Duration.ofMillis(500), Duration.ofMillis(300));
+        assertThat(ready, equalTo(false));
+    }
+
+    @Test
+    void waitsForDocumentReplacingMarkedOne() {
+        BrowserWindow window = new BrowserWindow("http://localhost/first");
+        WebDriver driver = window.driver();
+        PageReadinessWaiter.markCurrentDocument(driver);
+
+        boolean ready = PageReadinessWaiter.waitForPageReady(driver, Duration.ZERO, Duration.ofMillis(300));
+        assertThat(ready, equalTo(false));
+
+        PageReadinessWaiter.markCurrentDocument(driver);
+        window.open("http://localhost/second");
+        ready = PageReadinessWaiter.waitForPageReady(driver, Duration.ZERO, Duration.ofMillis(300));
+        assertThat(ready, equalTo(true));
+    }
+
+    @Test
+    void anchorNavigationReleasesMarkedDocument() {
+        BrowserWindow window = new BrowserWindow("http://localhost/page");
+        WebDriver driver = window.driver();
+        PageReadinessWaiter.markCurrentDocument(driver);
+        window.eval("window.location.href = 'http://localhost/page#section';");
+
+        boolean ready = PageReadinessWaiter.waitForPageReady(driver, Duration.ZERO, Duration.ofMillis(300));
+        assertThat(ready, equalTo(true));
+    }
+
+    @Test
+    void notReadyWhileFetchIsPending() {
+        BrowserWindow window = new BrowserWindow("http://localhost/page");
+        WebDriver driver = window.driver();
+        assertThat(PageReadinessWaiter.waitForPageReady(driver, Duration.ZERO, Duration.ofMillis(300)), equalTo(true));
+
+        window.eval("window.fetch('/api');");
+        assertThat(PageReadinessWaiter.waitForPageReady(driver, Duration.ZERO, Duration.ofMillis(300)), equalTo(false));
+
+        window.eval("pendingFetches.shift()();");
+        assertThat(PageReadinessWaiter.waitForPageReady(driver, Duration.ZERO, Duration.ofMillis(300)), equalTo(true));
+    }
+
+    @Test
+    void resourcesCountedByObserverWhenTimingBufferIsFull() {
+        BrowserWindow window = new BrowserWindow("http://localhost/page");
+        window.eval("var observers = [];" +
+                "var PerformanceObserver = function (callback) { observers.push(callback); };" +
+                "PerformanceObserver.prototype.observe = function () {};" +
+                "var fullBuffer = []; for (var i = 0; i < 250; i++) { fullBuffer.push({}); }" +
+                "performance.getEntriesByType = function () { return fullBuffer; };");
+        WebDriver driver = window.driver();
+        Duration idleTime = Duration.ofMillis(300);
+        assertThat(PageReadinessWaiter.waitForPageReady(driver, idleTime, Duration.ofSeconds(5)), equalTo(true));
+
+        window.eval("observers[0]({getEntries: function () { return [{}]; }});");
+        assertThat(PageReadinessWaiter.waitForPageReady(driver, idleTime, Duration.ofMillis(100)), equalTo(false));
+        assertThat(PageReadinessWaiter.waitForPageReady(driver, idleTime, Duration.ofSeconds(5)), equalTo(true));
+    }
+
+    /**
+     * Окно браузера, в котором скрипты PageReadinessWaiter выполняются интерпретатором Rhino.
+     * Каждый открытый документ получает новый объект window, как и в браузере
+     */
+    private static class BrowserWindow {
+        private static final String DOCUMENT_SCRIPT =
+                "var window = this;" +
+                "var document = {readyState: 'complete'};" +
+                "var location = {href: url};" +
+                "var performance = {getEntriesByType: function () { return []; }};" +
+                "var pendingFetches = [];" +
+                "var fetch = function () {" +
+                "  return {then: function (resolve) { pendingFetches.push(resolve); }};" +
+                "};";
+
+        private Scriptable scope;
+
+        BrowserWindow(String url) {
+            open(url);
+        }
+
+        void open(String url) {
+            Context context = Context.enter();
+            try {
+                scope = context.initStandardObjects();
+                scope.put("url", scope, url);
+                context.evaluateString(scope, DOCUMENT_SCRIPT, "document", 1, null);
+            } finally {
+                Context.exit();
+            }
+        }
+
+        Object eval(String script) {
+            Context context = Context.enter();
+            try {
+                return context.evaluateString(scope, script, "script", 1, null);
+            } finally {
+                Context.exit();
+            }
+        }
+
+        WebDriver driver() {
+            WebDriver driver = mockDriver();
+            when(((JavascriptExecutor) driver).executeScript(anyString())).thenAnswer(invocation -> {
+                Object result = eval("(function () {" + invocation.getArgument(0) + "})()");
+                if (result instanceof List) {
+                    return new ArrayList<>((List<?>) result);
+                }
+                return result;
+            });
+            return driver;
+        }
+    }
+}
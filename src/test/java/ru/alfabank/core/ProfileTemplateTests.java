@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import ru.alfabank.tests.core.drivers.ProfileTemplate;
+import ru.alfabank.util.TempDirectory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ProfileTemplateTests {
+
+    @RegisterExtension
+    final TempDirectory dir = new TempDirectory("akita-profile-template");
+
+    @Test
+    void templateCopiedWithoutLockFiles() throws IOException {
+        Path template = Files.createDirectories(dir.resolve("template/Default"));
+        Files.write(template.resolve("Preferences"), "{\"browser\":{}}".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("template/SingletonLock"), new byte[0]);
+        Path copy = Files.createDirectory(dir.resolve("copy"));
+
+        ProfileTemplate.copy(dir.resolve("template"), copy);
+
+        assertThat(new String(Files.readAllBytes(copy.resolve("Default/Preferences")), StandardCharsets.UTF_8),
+                equalTo("{\"browser\":{}}"));
+        assertThat(Files.exists(copy.resolve("SingletonLock")), equalTo(false));
+        assertThat(Files.exists(dir.resolve("template/SingletonLock")), equalTo(true));
+    }
+
+    @Test
+    void missingTemplateRejected() throws IOException {
+        Path copy = Files.createDirectory(dir.resolve("copy"));
+        assertThrows(IOException.class, () -> ProfileTemplate.copy(dir.resolve("missing"), copy));
+    }
+}
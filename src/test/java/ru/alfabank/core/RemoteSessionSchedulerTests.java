@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.SessionNotCreatedException;
+import ru.alfabank.tests.core.drivers.RemoteSessionScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RemoteSessionSchedulerTests {
+
+    private static final String GRID = "http://localhost:4444/wd/hub";
+
+    @Test
+    void concurrentSessionsLimitedPerGrid() throws Exception {
+        RemoteSessionScheduler scheduler = new RemoteSessionScheduler(2, 0,
+                Duration.ofMillis(1), Duration.ofMillis(1), Duration.ofSeconds(30));
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> sessions = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                sessions.add(workers.submit(() -> {
+                    RemoteSessionScheduler.Slot slot = scheduler.createSession(GRID, s -> s);
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    active.decrementAndGet();
+                    slot.release();
+                    return null;
+                }));
+            }
+            for (Future<?> session : sessions) {
+                session.get();
+            }
+        } finally {
+            workers.shutdown();
+        }
+        assertThat(maxActive.get(), equalTo(2));
+        assertThat(scheduler.getStats(GRID).getAcquisitions(), equalTo(12L));
+        assertThat(scheduler.getStats(GRID).getMaxWait(), greaterThan(Duration.ZERO));
+    }
+
+    @Test
+    void refusedSessionRetriedWithBackoff() {
+        RemoteSessionScheduler scheduler = new RemoteSessionScheduler(1, 3,
+                Duration.ofMillis(5), Duration.ofMillis(20), Duration.ofSeconds(1));
+        AtomicInteger attempts = new AtomicInteger();
+        String session = scheduler.createSession(GRID, slot -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new SessionNotCreatedException("Session quota exceeded");
+            }
+            return "session";
+        });
+        assertThat(session, equalTo("session"));
+        assertThat(scheduler.getStats(GRID).getRetries(), equalTo(2L));
+    }
+
+    @Test
+    void configurationErrorNotRetried() {
+        RemoteSessionScheduler scheduler = new RemoteSessionScheduler(1, 3,
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(1));
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(SessionNotCreatedException.class, () -> scheduler.createSession(GRID, slot -> {
+            attempts.incrementAndGet();
+            throw new SessionNotCreatedException("Could not start a new session. Invalid capabilities");
+        }));
+        assertThat(attempts.get(), equalTo(1));
+        assertThat(scheduler.getStats(GRID).getRetries(), equalTo(0L));
+    }
+
+    @Test
+    void slotReleasedWhenSessionNotCreated() {
+        RemoteSessionScheduler scheduler = new RemoteSessionScheduler(1, 1,
+                Duration.ofMillis(1), Duration.ofMillis(1), Duration.ofMillis(100));
+        assertThrows(SessionNotCreatedException.class, () -> scheduler.createSession(GRID, slot -> {
+            throw new SessionNotCreatedException("Грид недоступен");
+        }));
+        assertThat(scheduler.createSession(GRID, slot -> "session"), equalTo("session"));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import com.github.kklisura.cdt.protocol.commands.Fetch;
+import com.github.kklisura.cdt.protocol.events.fetch.RequestPaused;
+import com.github.kklisura.cdt.protocol.support.types.EventHandler;
+import com.github.kklisura.cdt.protocol.types.fetch.HeaderEntry;
+import com.github.kklisura.cdt.protocol.types.fetch.RequestPattern;
+import com.github.kklisura.cdt.protocol.types.network.ErrorReason;
+import com.github.kklisura.cdt.protocol.types.network.ResourceType;
+import com.github.kklisura.cdt.services.ChromeDevToolsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.alfabank.tests.core.drivers.ResourceTypeBlocker;
+import ru.alfabank.tests.core.drivers.ResourceTypeBlocker.BlockingSession;
+import ru.alfabank.tests.core.drivers.ResourceTypeBlocker.Profile;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResourceTypeBlockerTests {
+
+    private Fetch fetch;
+    private EventHandler<RequestPaused> handler;
+    private List<RequestPattern> patterns;
+
+    @BeforeEach
+    void mockDevTools() {
+        fetch = mock(Fetch.class);
+    }
+
+    @Test
+    void resourceTypesParsedFromCdpNames() {
+        Profile profile = new Profile("Image, TextTrack,CSPViolationReport, web_socket", 0);
+        assertThat(profile.getBlockedTypes(), contains(ResourceType.IMAGE, ResourceType.TEXT_TRACK,
+                ResourceType.WEB_SOCKET, ResourceType.CSP_VIOLATION_REPORT));
+    }
+
+    @Test
+    void unknownResourceTypeRejected() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> new Profile("Image,Picture", 0));
+        assertThat(exception.getMessage().contains("Picture"), is(true));
+    }
+
+    @Test
+    void emptyProfile() {
+        assertThat(new Profile(" , ", 0).isEmpty(), is(true));
+        assertThat(new Profile("", 1024).isEmpty(), is(false));
+    }
+
+    @Test
+    void contentLengthParsedFromHeaders() {
+        assertThat(ResourceTypeBlocker.getContentLength(Arrays.asList(header("Content-Type", "image/png"),
+                header("content-length", " 2048 "))), equalTo(2048L));
+        assertThat(ResourceTypeBlocker.getContentLength(Collections.singletonList(header("Content-Length", "abc"))),
+                equalTo(-1L));
+        assertThat(ResourceTypeBlocker.getContentLength(Collections.emptyList()), equalTo(-1L));
+        assertThat(ResourceTypeBlocker.getContentLength(null), equalTo(-1L));
+    }
+
+    @Test
+    void sizeLimitAppliedOnlyToImagesFontsAndMedia() {
+        Profile profile = new Profile("Font", 1000);
+        assertThat(profile.isBlocked(ResourceType.FONT, 10), is(true));
+        assertThat(profile.isBlocked(ResourceType.IMAGE, 1001), is(true));
+        assertThat(profile.isBlocked(ResourceType.IMAGE, 1000), is(false));
+        assertThat(profile.isBlocked(ResourceType.IMAGE, -1), is(false));
+        assertThat(profile.isBlocked(ResourceType.SCRIPT, 5000), is(false));
+    }
+
+    @Test
+    void blockedTypesInterceptedBeforeRequestIsSent() {
+        startSession(new Profile("Image, Script", 1000));
+        assertThat(patterns.stream().map(pattern -> pattern.getResourceType() + ":" + pattern.getRequestStage())
+                        .collect(Collectors.toList()),
+                containsInAnyOrder("IMAGE:REQUEST", "SCRIPT:REQUEST", "FONT:RESPONSE", "MEDIA:RESPONSE"));
+    }
+
+    @Test
+    void blockedResponsesFailedAndCounted() {
+        BlockingSession session = startSession(new Profile("Image", 0));
+        handler.onEvent(event("1", ResourceType.IMAGE, "3000"));
+        handler.onEvent(event("2", ResourceType.SCRIPT, "500"));
+        verify(fetch).failRequest("1", ErrorReason.BLOCKED_BY_CLIENT);
+        verify(fetch).continueRequest("2");
+        assertThat(session.getScenarioStats().getRequests(), equalTo(1L));
+        assertThat(session.getScenarioStats().getBytes(), equalTo(3000L));
+    }
+
+    @Test
+    void disabledSessionContinuesAllResponses() {
+        BlockingSession session = startSession(new Profile("Image", 0));
+        session.setEnabled(false);
+        handler.onEvent(event("1", ResourceType.IMAGE, "3000"));
+        verify(fetch).continueRequest("1");
+        verify(fetch, never()).failRequest(any(), any());
+        assertThat(session.getScenarioStats().getRequests(), equalTo(0L));
+    }
+
+    @Test
+    void newScenarioResetsStats() {
+        BlockingSession session = startSession(new Profile("Image", 0));
+        handler.onEvent(event("1", ResourceType.IMAGE, null));
+        assertThat(session.getScenarioStats().getRequests(), equalTo(1L));
+        assertThat(session.getScenarioStats().getBytes(), equalTo(0L));
+        session.startScenario(true);
+        assertThat(session.getScenarioStats().getRequests(), equalTo(0L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private BlockingSession startSession(Profile profile) {
+        ChromeDevToolsService devTools = mock(ChromeDevToolsService.class);
+        when(devTools.getFetch()).thenReturn(fetch);
+        BlockingSession session = new BlockingSession(devTools, profile).start();
+        ArgumentCaptor<EventHandler<RequestPaused>> captor = ArgumentCaptor.forClass(EventHandler.class);
+        ArgumentCaptor<List<RequestPattern>> patternsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(fetch).onRequestPaused(captor.capture());
+        verify(fetch).enable(patternsCaptor.capture(), eq(false));
+        handler = captor.getValue();
+        patterns = patternsCaptor.getValue();
+        return session;
+    }
+
+    private static RequestPaused event(String requestId, ResourceType type, String contentLength) {
+        RequestPaused event = new RequestPaused();
+        event.setRequestId(requestId);
+        event.setResourceType(type);
+        List<HeaderEntry> headers = contentLength == null
+                ? Collections.emptyList()
+                : Collections.singletonList(header("Content-Length", contentLength));
+        event.setResponseHeaders(headers);
+        return event;
+    }
+
+    private static HeaderEntry header(String name, String value) {
+        HeaderEntry header = new HeaderEntry();
+        header.setName(name);
+        header.setValue(value);
+        return header;
+    }
+}
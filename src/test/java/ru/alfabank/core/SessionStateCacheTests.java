@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import ru.alfabank.tests.core.helpers.SessionStateCache;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class SessionStateCacheTests {
+
+    private static final Cookie SESSION_COOKIE = new Cookie("JSESSIONID", "42");
+
+    private static WebDriver mockDriver(String url) {
+        WebDriver driver = mock(WebDriver.class, withSettings()
+                .extraInterfaces(JavascriptExecutor.class)
+                .defaultAnswer(RETURNS_DEEP_STUBS));
+        when(driver.getCurrentUrl()).thenReturn(url);
+        when(driver.manage().getCookies()).thenReturn(Collections.singleton(SESSION_COOKIE));
+        when(((JavascriptExecutor) driver).executeScript(anyString())).thenReturn(Arrays.asList(
+                Collections.singletonMap("token", "abc"), Collections.singletonMap("tab", "1")));
+        return driver;
+    }
+
+    @Test
+    void capturedStateRestoredForSameUser() {
+        SessionStateCache cache = new SessionStateCache(Duration.ofMinutes(1));
+        cache.capture("user", mockDriver("https://bank.test/dashboard"));
+
+        WebDriver next = mockDriver("https://bank.test/login");
+        assertThat(cache.restore("user", next), equalTo(true));
+        verify(next.manage()).addCookie(SESSION_COOKIE);
+        verify((JavascriptExecutor) next).executeScript(anyString(),
+                eq(Collections.singletonMap("token", "abc")), eq(Collections.singletonMap("tab", "1")));
+        verify(next.navigate()).refresh();
+        assertThat(cache.restore("other", next), equalTo(false));
+    }
+
+    @Test
+    void stateNotRestoredOnOtherSite() {
+        SessionStateCache cache = new SessionStateCache(Duration.ofMinutes(1));
+        cache.capture("user", mockDriver("https://bank.test/dashboard"));
+        WebDriver next = mockDriver("https://other.test/login");
+        assertThat(cache.restore("user", next), equalTo(false));
+        verify(next.manage(), never()).addCookie(any());
+    }
+
+    @Test
+    void expiredOrInvalidatedStateNotRestored() {
+        SessionStateCache expiring = new SessionStateCache(Duration.ZERO);
+        expiring.capture("user", mockDriver("https://bank.test/dashboard"));
+        assertThat(expiring.restore("user", mockDriver("https://bank.test/login")), equalTo(false));
+
+        SessionStateCache cache = new SessionStateCache(Duration.ofMinutes(1));
+        cache.capture("user", mockDriver("https://bank.test/dashboard"));
+        cache.invalidate("user");
+        assertThat(cache.restore("user", mockDriver("https://bank.test/login")), equalTo(false));
+    }
+}
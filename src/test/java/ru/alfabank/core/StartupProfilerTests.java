@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.alfabank.tests.core.helpers.StartupProfiler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class StartupProfilerTests {
+
+    @AfterEach
+    void disableProfiling() {
+        StartupProfiler.setEnabled(false);
+    }
+
+    @Test
+    void nestedPhasesReportedAfterParent() {
+        StartupProfiler.setEnabled(true);
+        String result = StartupProfiler.measure("test: parent",
+                () -> StartupProfiler.measure("test: child", () -> "value"));
+        assertThat(result, equalTo("value"));
+        String report = StartupProfiler.getReport();
+        assertThat(report, containsString("\ntest: parent: "));
+        assertThat(report, containsString("\n  test: child: "));
+        assertThat(report.indexOf("test: parent"), lessThan(report.indexOf("test: child")));
+    }
+
+    @Test
+    void disabledProfilerDoesNotRecord() {
+        StartupProfiler.measure("test: disabled", () -> null);
+        assertThat(StartupProfiler.getReport(), not(containsString("test: disabled")));
+    }
+}
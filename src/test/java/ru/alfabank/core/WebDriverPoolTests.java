@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.core;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.chromium.HasCdp;
+import ru.alfabank.tests.core.drivers.WebDriverPool;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class WebDriverPoolTests {
+
+    private static final String KEY = "chrome|local|false";
+
+    private static WebDriver mockDriver() {
+        WebDriver driver = mock(WebDriver.class, withSettings()
+                .extraInterfaces(JavascriptExecutor.class)
+                .defaultAnswer(RETURNS_DEEP_STUBS));
+        when(driver.getWindowHandles()).thenReturn(Collections.singleton("main"));
+        when(driver.getCurrentUrl()).thenReturn("http://localhost/page");
+        return driver;
+    }
+
+    @Test
+    void releasedDriverReusedAfterReset() {
+        WebDriverPool pool = new WebDriverPool(10, Duration.ofMinutes(1));
+        WebDriver driver = mockDriver();
+        AtomicInteger created = new AtomicInteger();
+
+        WebDriver first = pool.acquire(KEY, () -> {
+            created.incrementAndGet();
+            return driver;
+        });
+        first.quit();
+        assertThat(pool.getIdleCount(KEY), equalTo(1));
+
+        WebDriver second = pool.acquire(KEY, () -> {
+            created.incrementAndGet();
+            return mockDriver();
+        });
+        assertThat(created.get(), equalTo(1));
+        assertThat(((WrapsDriver) second).getWrappedDriver(), sameInstance(driver));
+        assertThat(second, instanceOf(JavascriptExecutor.class));
+        verify(driver, never()).quit();
+        verify(driver).get("about:blank");
+        verify((JavascriptExecutor) driver).executeAsyncScript(anyString());
+    }
+
+    @Test
+    void driverClosedAfterMaxReuse() {
+        WebDriverPool pool = new WebDriverPool(1, Duration.ofMinutes(1));
+        WebDriver driver = mockDriver();
+        pool.acquire(KEY, () -> driver).quit();
+        verify(driver).quit();
+        assertThat(pool.getIdleCount(KEY), equalTo(0));
+    }
+
+    @Test
+    void driverClosedWhenResetFails() {
+        WebDriverPool pool = new WebDriverPool(10, Duration.ofMinutes(1));
+        WebDriver driver = mockDriver();
+        doThrow(new WebDriverException("browser crashed")).when(driver).get("about:blank");
+        pool.acquire(KEY, () -> driver).quit();
+        verify(driver).quit();
+        assertThat(pool.getIdleCount(KEY), equalTo(0));
+    }
+
+    @Test
+    void visitedOriginsClearedThroughCdp() {
+        WebDriverPool pool = new WebDriverPool(10, Duration.ofMinutes(1));
+        WebDriver driver = mock(WebDriver.class, withSettings()
+                .extraInterfaces(JavascriptExecutor.class, HasCdp.class)
+                .defaultAnswer(RETURNS_DEEP_STUBS));
+        when(driver.getWindowHandles()).thenReturn(Collections.singleton("main"));
+        Map<String, Object> history = new HashMap<>();
+        history.put("entries", Arrays.asList(
+                Collections.singletonMap("url", "about:blank"),
+                Collections.singletonMap("url", "http://localhost/page"),
+                Collections.singletonMap("url", "https://sso.example.com:8443/login?next=/"),
+                Collections.singletonMap("url", "http://localhost/other")));
+        when(((HasCdp) driver).executeCdpCommand(eq("Page.getNavigationHistory"), anyMap())).thenReturn(history);
+
+        pool.acquire(KEY, () -> driver).quit();
+
+        Map<String, Object> localhost = new HashMap<>();
+        localhost.put("origin", "http://localhost");
+        localhost.put("storageTypes", "all");
+        Map<String, Object> sso = new HashMap<>();
+        sso.put("origin", "https://sso.example.com:8443");
+        sso.put("storageTypes", "all");
+        verify((HasCdp) driver).executeCdpCommand("Storage.clearDataForOrigin", localhost);
+        verify((HasCdp) driver).executeCdpCommand("Storage.clearDataForOrigin", sso);
+        verify((HasCdp) driver).executeCdpCommand("Network.clearBrowserCookies", Collections.emptyMap());
+        verify((JavascriptExecutor) driver, never()).executeAsyncScript(anyString());
+        assertThat(pool.getIdleCount(KEY), equalTo(1));
+    }
+
+    @Test
+    void extraWindowsClosedOnRelease() {
+        WebDriverPool pool = new WebDriverPool(10, Duration.ofMinutes(1));
+        WebDriver driver = mockDriver();
+        when(driver.getWindowHandles()).thenReturn(new LinkedHashSet<>(Arrays.asList("main", "popup")));
+        pool.acquire(KEY, () -> driver).quit();
+        verify(driver.switchTo()).window("popup");
+        verify(driver.switchTo()).window("main");
+        assertThat(pool.getIdleCount(KEY), equalTo(1));
+    }
+
+    @Test
+    void warmUpLaunchesBrowsersInBackground() throws InterruptedException {
+        WebDriverPool pool = new WebDriverPool(10, Duration.ofMinutes(1));
+        AtomicInteger created = new AtomicInteger();
+        Supplier<WebDriver> factory = () -> {
+            created.incrementAndGet();
+            return mockDriver();
+        };
+        pool.warmUp(KEY, 2, factory);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pool.getIdleCount(KEY) < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(pool.getIdleCount(KEY), equalTo(2));
+
+        pool.warmUp(KEY, 2, factory);
+        pool.acquire(KEY, factory);
+        assertThat(created.get(), equalTo(2));
+        assertThat(pool.getIdleCount(KEY), equalTo(1));
+        pool.shutdown();
+    }
+
+    @Test
+    void deadDriverReplacedOnAcquire() {
+        WebDriverPool pool = new WebDriverPool(10, Duration.ofMinutes(1));
+        WebDriver dead = mockDriver();
+        pool.acquire(KEY, () -> dead).quit();
+        when(dead.getWindowHandles()).thenThrow(new WebDriverException("session deleted"));
+
+        WebDriver replacement = mockDriver();
+        WebDriver acquired = pool.acquire(KEY, () -> replacement);
+        assertThat(((WrapsDriver) acquired).getWrappedDriver(), sameInstance(replacement));
+        assertThat(pool.getStats().getCrashes(), equalTo(1L));
+        assertThat(pool.getStats().getReplacements(), equalTo(1L));
+        verify(dead, timeout(5000)).quit();
+        pool.shutdown();
+    }
+
+    @Test
+    void hungDriverEvictedAfterTimeout() {
+        WebDriverPool pool = new WebDriverPool(10, Duration.ofMinutes(1), Duration.ofMillis(100), Duration.ZERO);
+        WebDriver hung = mockDriver();
+        pool.acquire(KEY, () -> hung).quit();
+        when(hung.getWindowHandles()).thenAnswer(invocation -> {
+            Thread.sleep(10000);
+            return Collections.singleton("main");
+        });
+
+        WebDriver replacement = mockDriver();
+        long start = System.currentTimeMillis();
+        WebDriver acquired = pool.acquire(KEY, () -> replacement);
+        assertThat(System.currentTimeMillis() - start, lessThan(5000L));
+        assertThat(((WrapsDriver) acquired).getWrappedDriver(), sameInstance(replacement));
+        assertThat(pool.getStats().getCrashes(), equalTo(1L));
+        pool.shutdown();
+    }
+
+    @Test
+    void idleDeadDriverEvictedInBackground() throws InterruptedException {
+        WebDriverPool pool = new WebDriverPool(10, Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofMillis(50));
+        WebDriver dead = mockDriver();
+        pool.acquire(KEY, () -> dead).quit();
+        when(dead.getWindowHandles()).thenThrow(new WebDriverException("session deleted"));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pool.getStats().getCrashes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(pool.getIdleCount(KEY), equalTo(0));
+        assertThat(pool.getStats().getCrashes(), equalTo(1L));
+        verify(dead, timeout(5000)).quit();
+        pool.shutdown();
+    }
+}
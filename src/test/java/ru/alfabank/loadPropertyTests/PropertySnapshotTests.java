@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.loadPropertyTests;
+
+import org.junit.jupiter.api.Test;
+import ru.alfabank.tests.core.helpers.PropertyLoader;
+import ru.alfabank.tests.core.helpers.PropertySnapshot;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PropertySnapshotTests {
+
+    private static PropertySnapshot createSnapshot() {
+        Map<String, String> values = new HashMap<>();
+        values.put("timeout", " 1500 ");
+        values.put("headless", "true");
+        values.put("pollingInterval", "5s");
+        values.put("pageTimeout", "PT2M");
+        values.put("plainDuration", "250");
+        values.put("hosts", "first, second,,third ");
+        values.put("wrongNumber", "abc");
+        return new PropertySnapshot(values);
+    }
+
+    @Test
+    void typedValues() {
+        PropertySnapshot snapshot = createSnapshot();
+        assertThat(snapshot.getInt("timeout", 0), equalTo(1500));
+        assertThat(snapshot.getBoolean("headless", false), equalTo(true));
+        assertThat(snapshot.getDuration("pollingInterval", Duration.ZERO), equalTo(Duration.ofSeconds(5)));
+        assertThat(snapshot.getDuration("pageTimeout", Duration.ZERO), equalTo(Duration.ofMinutes(2)));
+        assertThat(snapshot.getDuration("plainDuration", Duration.ZERO), equalTo(Duration.ofMillis(250)));
+        assertThat(snapshot.getList("hosts", Collections.emptyList()), equalTo(Arrays.asList("first", "second", "third")));
+    }
+
+    @Test
+    void defaultValuesForMissingProperties() {
+        PropertySnapshot snapshot = createSnapshot();
+        assertThat(snapshot.getInt("missing", 42), equalTo(42));
+        assertThat(snapshot.getInt("missing", 7), equalTo(7));
+        assertThat(snapshot.getBoolean("missing", true), equalTo(true));
+        assertThat(snapshot.get("missing"), nullValue());
+    }
+
+    @Test
+    void wrongNumberThrowsException() {
+        assertThrows(NumberFormatException.class, () -> createSnapshot().getInt("wrongNumber", 0));
+    }
+
+    @Test
+    void snapshotIsImmutable() {
+        PropertySnapshot snapshot = createSnapshot();
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.asMap().put("timeout", "1"));
+    }
+
+    @Test
+    void systemPropertyAppliedAfterReload() {
+        String propertyName = "varFromPropertyFile1";
+        System.setProperty(propertyName, "overridden");
+        try {
+            assertThat(PropertyLoader.loadProperty(propertyName), equalTo("caramba"));
+            PropertyLoader.reloadProperties();
+            assertThat(PropertyLoader.loadProperty(propertyName), equalTo("overridden"));
+        } finally {
+            System.clearProperty(propertyName);
+            PropertyLoader.reloadProperties();
+        }
+        assertThat(PropertyLoader.loadProperty(propertyName), equalTo("caramba"));
+    }
+
+    @Test
+    void systemIntPropertyAppliedAfterReload() {
+        String propertyName = "fileContentCacheMaxSize";
+        Integer snapshotValue = PropertyLoader.loadPropertyInt(propertyName, 0);
+        System.setProperty(propertyName, " 1024 ");
+        try {
+            assertThat(PropertyLoader.loadSystemPropertyOrDefault(propertyName, 0), equalTo(1024));
+            PropertyLoader.reloadProperties();
+            assertThat(PropertyLoader.loadPropertyInt(propertyName, 0), equalTo(1024));
+        } finally {
+            System.clearProperty(propertyName);
+            PropertyLoader.reloadProperties();
+        }
+        assertThat(PropertyLoader.loadPropertyInt(propertyName, 0), equalTo(snapshotValue));
+        assertThat(PropertyLoader.loadSystemPropertyOrDefault(propertyName, 7), equalTo(7));
+    }
+
+    @Test
+    void profilesMergedInOrder() {
+        System.setProperty("profile", "customProperties/application.properties, customProperties/chrome.properties");
+        try {
+            PropertyLoader.reloadProperties();
+            assertThat(PropertyLoader.loadProperty("testVar"), equalTo("chromeProfileTestValue"));
+            assertThat(PropertyLoader.loadProperty("profileOnlyVar"), equalTo("chromeProfileOnlyValue"));
+            assertThat(PropertyLoader.loadProperty("varFromPropertyFile1"), equalTo("caramba"));
+        } finally {
+            System.clearProperty("profile");
+            PropertyLoader.reloadProperties();
+        }
+    }
+}
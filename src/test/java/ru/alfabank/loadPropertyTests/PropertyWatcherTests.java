@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.loadPropertyTests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.alfabank.tests.core.helpers.PropertyLoader;
+import ru.alfabank.tests.core.helpers.PropertySnapshot;
+import ru.alfabank.tests.core.helpers.PropertyWatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class PropertyWatcherTests {
+
+    private Path dir;
+
+    private Consumer<PropertySnapshot> listener;
+
+    @BeforeEach
+    void createTempDir() throws IOException {
+        dir = Files.createTempDirectory("akita-property-watcher");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        PropertyLoader.removeChangeListener(listener);
+        PropertyLoader.stopWatchingProperties();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void reloadNotifiesListeners() {
+        PropertySnapshot[] received = new PropertySnapshot[1];
+        listener = properties -> received[0] = properties;
+        PropertyLoader.addChangeListener(listener);
+        PropertySnapshot reloaded = PropertyLoader.reloadProperties();
+        assertThat(received[0], equalTo(reloaded));
+    }
+
+    @Test
+    void changedFileTriggersReload() throws IOException, InterruptedException {
+        Path file = Files.write(dir.resolve("application.properties"), "a=1".getBytes(StandardCharsets.UTF_8));
+        CountDownLatch reloaded = new CountDownLatch(1);
+        listener = properties -> reloaded.countDown();
+        PropertyLoader.addChangeListener(listener);
+        PropertyWatcher.start(Collections.singletonList(file));
+
+        Files.write(file, "a=2".getBytes(StandardCharsets.UTF_8));
+        assertThat(reloaded.await(30, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    void snapshotBuiltFromChangedSourceFile() throws IOException, InterruptedException {
+        Path source = Files.write(dir.resolve("application.properties"), "hotReloadVar=1".getBytes(StandardCharsets.UTF_8));
+        CountDownLatch reloaded = new CountDownLatch(1);
+        listener = properties -> {
+            if ("2".equals(properties.get("hotReloadVar"))) {
+                reloaded.countDown();
+            }
+        };
+        PropertyLoader.addChangeListener(listener);
+        PropertyLoader.watchProperties(dir.toString());
+
+        Files.write(source, "hotReloadVar=2".getBytes(StandardCharsets.UTF_8));
+        assertThat(reloaded.await(30, TimeUnit.SECONDS), is(true));
+        assertThat(PropertyLoader.loadProperty("hotReloadVar"), equalTo("2"));
+    }
+
+    @Test
+    void failedReloadKeepsPreviousSnapshotAndWatching() throws IOException, InterruptedException {
+        Path file = Files.write(dir.resolve("application.properties"), "a=1".getBytes(StandardCharsets.UTF_8));
+        PropertySnapshot previous = PropertyLoader.getSnapshot();
+        CountDownLatch reloaded = new CountDownLatch(1);
+        listener = properties -> reloaded.countDown();
+        PropertyLoader.addChangeListener(listener);
+        PropertyWatcher.start(Collections.singletonList(file));
+
+        System.setProperty("profile", "missing.properties");
+        try {
+            Files.write(file, "a=2".getBytes(StandardCharsets.UTF_8));
+            assertThat(reloaded.await(2, TimeUnit.SECONDS), is(false));
+            assertThat(PropertyLoader.getSnapshot(), equalTo(previous));
+        } finally {
+            System.clearProperty("profile");
+        }
+        Files.write(file, "a=3".getBytes(StandardCharsets.UTF_8));
+        assertThat(reloaded.await(30, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    void watchDirPointsToSourceFiles() {
+        List<Path> files = PropertyLoader.getWatchedPropertyFiles("src/test/resources");
+        assertThat(files.get(0), equalTo(Paths.get("src/test/resources", "application.properties")));
+    }
+}
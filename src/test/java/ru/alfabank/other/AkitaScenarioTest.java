@@ -23,9 +23,17 @@ import ru.alfabank.StubScenario;
 import ru.alfabank.alfatest.cucumber.ScopedVariables;
 import ru.alfabank.alfatest.cucumber.api.AkitaEnvironment;
 import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
+import ru.alfabank.alfatest.cucumber.api.LogLevel;
 import ru.alfabank.steps.WebPageInteractionSteps;
+import ru.alfabank.tests.core.helpers.PropertyLoader;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -135,4 +143,117 @@ public class AkitaScenarioTest {
                 equalTo("12"));
     }
 
+    @Test
+    void writeSupplierOnEnabledLevel() {
+        List<String> entries = new ArrayList<>();
+        akitaScenario.setEnvironment(new AkitaEnvironment(new StubScenario() {
+            @Override
+            public void write(String text) {
+                entries.add(text);
+            }
+        }));
+        akitaScenario.write(() -> "Тело ответа");
+        akitaScenario.write(LogLevel.DEBUG, () -> {
+            throw new AssertionError("Запись уровня DEBUG не должна формироваться");
+        });
+        assertThat(entries, contains("Тело ответа"));
+    }
+
+    @Test
+    void unknownReportLogLevelFallsBackToInfo() {
+        List<String> entries = new ArrayList<>();
+        akitaScenario.setEnvironment(new AkitaEnvironment(new StubScenario() {
+            @Override
+            public void write(String text) {
+                entries.add(text);
+            }
+        }));
+        System.setProperty("reportLogLevel", "verbose");
+        try {
+            PropertyLoader.reloadProperties();
+            akitaScenario.write(() -> "Запись уровня INFO");
+            akitaScenario.write(LogLevel.DEBUG, () -> "Запись уровня DEBUG");
+        } finally {
+            System.clearProperty("reportLogLevel");
+            PropertyLoader.reloadProperties();
+        }
+        assertThat(entries, contains("Запись уровня INFO"));
+    }
+
+    @Test
+    void writeTruncatesLongEntries() {
+        List<String> entries = new ArrayList<>();
+        akitaScenario.setEnvironment(new AkitaEnvironment(new StubScenario() {
+            @Override
+            public void write(String text) {
+                entries.add(text);
+            }
+        }));
+        StringBuilder longMessage = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            longMessage.append('a');
+        }
+        akitaScenario.write(longMessage);
+        assertThat(entries.get(0), startsWith(longMessage.substring(0, 1000) + "... [обрезано"));
+    }
+
+    @Test
+    void environmentIsConfinedToThread() throws Exception {
+        AkitaEnvironment mainEnvironment = akitaScenario.getEnvironment();
+        akitaScenario.setVar("threadVar", "main");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Object otherThreadValue = executor.submit(() -> {
+                assertThat(akitaScenario.getEnvironment(), is(nullValue()));
+                akitaScenario.setEnvironment(new AkitaEnvironment(new StubScenario()));
+                akitaScenario.setVar("threadVar", "other");
+                return akitaScenario.getVar("threadVar");
+            }).get();
+            assertThat(otherThreadValue, equalTo("other"));
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(akitaScenario.getEnvironment(), sameInstance(mainEnvironment));
+        assertThat(akitaScenario.getVar("threadVar"), equalTo("main"));
+    }
+
+    @Test
+    void logLevelIncludes() {
+        assertThat(LogLevel.INFO.includes(LogLevel.INFO), is(true));
+        assertThat(LogLevel.INFO.includes(LogLevel.DEBUG), is(false));
+        assertThat(LogLevel.DEBUG.includes(LogLevel.INFO), is(true));
+        assertThat(LogLevel.OFF.includes(LogLevel.INFO), is(false));
+    }
+
+    @Test
+    void embedStoresLargeAttachmentsInFiles() {
+        List<byte[]> embedded = new ArrayList<>();
+        List<String> entries = new ArrayList<>();
+        System.setProperty("attachmentInlineMaxSize", "4");
+        try {
+            PropertyLoader.reloadProperties();
+            akitaScenario.setEnvironment(new AkitaEnvironment(new StubScenario() {
+                @Override
+                public void embed(byte[] data, String mimeType) {
+                    embedded.add(data);
+                }
+
+                @Override
+                public void write(String text) {
+                    entries.add(text);
+                }
+            }));
+            akitaScenario.embed("1234".getBytes(), "text/plain");
+            akitaScenario.embed("12345".getBytes(), "text/plain");
+        } finally {
+            System.clearProperty("attachmentInlineMaxSize");
+            PropertyLoader.reloadProperties();
+        }
+        assertThat(embedded, hasSize(1));
+        assertThat(new String(embedded.get(0)), equalTo("1234"));
+        assertThat(entries, hasSize(1));
+        String prefix = "Вложение text/plain сохранено в файл: ";
+        assertThat(entries.get(0), startsWith(prefix));
+        assertThat(Files.exists(Paths.get(entries.get(0).substring(prefix.length()))), is(true));
+    }
 }
@@ -18,9 +18,16 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import ru.alfabank.StubScenario;
 import ru.alfabank.alfatest.cucumber.ScopedVariables;
+import ru.alfabank.alfatest.cucumber.VariableScope;
 import ru.alfabank.alfatest.cucumber.api.AkitaEnvironment;
 import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
@@ -38,6 +45,7 @@ public class ScopedVariablesTest {
 
     @AfterAll
     static void close() {
+        ScopedVariables.clearSharedScopes();
         WebDriverRunner.closeWebDriver();
     }
 
@@ -134,4 +142,71 @@ public class ScopedVariablesTest {
                 ScopedVariables.resolveVars(inputJsonString));
     }
 
+    @Test
+    void globalVariableVisibleInAnotherScenario() {
+        variables.put("globalToken", "token", VariableScope.GLOBAL);
+        assertThat(new ScopedVariables("other.feature").get("globalToken"), equalTo("token"));
+    }
+
+    @Test
+    void featureVariableVisibleOnlyInSameFeature() {
+        new ScopedVariables("first.feature").put("featureVar", "first", VariableScope.FEATURE);
+        assertThat(new ScopedVariables("first.feature").get("featureVar"), equalTo("first"));
+        assertThat(new ScopedVariables("second.feature").get("featureVar"), equalTo(null));
+    }
+
+    @Test
+    void scenarioVariableOverridesSharedScopes() {
+        ScopedVariables scenarioVariables = new ScopedVariables("override.feature");
+        scenarioVariables.put("overridden", "global", VariableScope.GLOBAL);
+        scenarioVariables.put("overridden", "feature", VariableScope.FEATURE);
+        assertThat(scenarioVariables.get("overridden"), equalTo("feature"));
+        scenarioVariables.put("overridden", "scenario");
+        assertThat(scenarioVariables.get("overridden"), equalTo("scenario"));
+        assertThat(scenarioVariables.get("overridden", VariableScope.GLOBAL), equalTo("global"));
+    }
+
+    @Test
+    void clearKeepsSharedScopes() {
+        ScopedVariables scenarioVariables = new ScopedVariables("clear.feature");
+        scenarioVariables.put("sharedVar", "feature", VariableScope.FEATURE);
+        scenarioVariables.clear();
+        assertThat(scenarioVariables.get("sharedVar"), equalTo("feature"));
+    }
+
+    @Test
+    void evaluateWithSharedVariables() {
+        ScopedVariables scenarioVariables = new ScopedVariables("evaluate.feature");
+        scenarioVariables.put("globalNumber", "2", VariableScope.GLOBAL);
+        scenarioVariables.put("scenarioNumber", "3");
+        assertThat(scenarioVariables.evaluate("globalNumber + scenarioNumber").toString(), equalTo("5"));
+    }
+
+    @Test
+    void largeValueSpilledToFileAndReleased() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() <= 100000) {
+            builder.append("большое значение ");
+        }
+        String largeValue = builder.toString();
+        ScopedVariables scenarioVariables = new ScopedVariables();
+        int filesBefore = countSpilledFiles();
+        scenarioVariables.put("largeValue", largeValue);
+        assertThat(countSpilledFiles(), equalTo(filesBefore + 1));
+        assertThat(scenarioVariables.get("largeValue"), equalTo(largeValue));
+        assertThat(scenarioVariables.replaceVariables("{largeValue}"), equalTo(largeValue));
+        scenarioVariables.clear();
+        assertThat(countSpilledFiles(), equalTo(filesBefore));
+        assertThat(scenarioVariables.get("largeValue"), equalTo(null));
+    }
+
+    private int countSpilledFiles() throws IOException {
+        Path dir = Paths.get("build/spilled-variables");
+        if (!Files.exists(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return (int) files.filter(Files::isRegularFile).count();
+        }
+    }
 }
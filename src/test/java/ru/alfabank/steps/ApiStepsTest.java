@@ -21,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import ru.alfabank.StubScenario;
 import ru.alfabank.alfatest.cucumber.api.AkitaEnvironment;
 import ru.alfabank.alfatest.cucumber.api.AkitaScenario;
+import ru.alfabank.tests.core.helpers.PropertyLoader;
 import ru.alfabank.tests.core.rest.RequestParam;
 import ru.alfabank.tests.core.rest.RequestParamType;
 
@@ -31,7 +32,12 @@ import java.util.List;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static ru.alfabank.alfatest.cucumber.ScopedVariables.resolveVars;
 import static ru.alfabank.tests.core.helpers.PropertyLoader.loadValueFromFileOrPropertyOrVariableOrDefault;
 import static ru.alfabank.tests.core.rest.RequestParamType.PARAMETER;
@@ -133,6 +139,25 @@ public class ApiStepsTest {
         assertThat(akitaScenario.getVar("RESPONSE_POST_BODY"), equalTo("TEST_BODY"));
     }
 
+    @Test
+    void sendHttpRequestWithBodyFromFileStreamPost() {
+        stubFor(post(urlEqualTo("/post/resource"))
+                .withRequestBody(WireMock.equalTo("{\"asn\": \"1\"}"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/xml")
+                        .withBody("TEST_BODY")));
+
+        List<RequestParam> params = Collections.singletonList(
+                RequestParam.builder()
+                        .name("body")
+                        .type(RequestParamType.BODY_FILE)
+                        .value("/src/test/resources/body.json")
+                        .build());
+        api.sendHttpRequestSaveResponse("POST", "/post/resource", "RESPONSE_POST_BODY", params);
+        assertThat(akitaScenario.getVar("RESPONSE_POST_BODY"), equalTo("TEST_BODY"));
+    }
+
     @Test
     void sendHttpRequestSaveResponseTest() {
         stubFor(post(urlEqualTo("/post/saveWithTable"))
@@ -232,4 +257,59 @@ public class ApiStepsTest {
         String actualBodyValue = loadValueFromFileOrPropertyOrVariableOrDefault(resolveVars(defaultBodyValue));
         assertThat(actualBodyValue, equalTo(expectedBodyValue));
     }
-}
\ No newline at end of file
+
+    @Test
+    void successfulResponseWrittenWithoutFormattingOnInfoLevel() {
+        stubFor(get(urlEqualTo("/get/json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"a\":1}")));
+        List<String> entries = recordReportEntries();
+        api.sendHttpRequestWithoutParams("GET", "/get/json", "RESPONSE_JSON");
+        assertThat(entries, hasItem("Тело ответа : \n{\"a\":1}"));
+    }
+
+    @Test
+    void successfulResponseFormattedOnDebugLevel() {
+        stubFor(get(urlEqualTo("/get/json"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"a\":1}")));
+        System.setProperty("reportLogLevel", "DEBUG");
+        try {
+            PropertyLoader.reloadProperties();
+            List<String> entries = recordReportEntries();
+            api.sendHttpRequestWithoutParams("GET", "/get/json", "RESPONSE_JSON");
+            assertThat(entries, hasItem(allOf(startsWith("Тело ответа : \n{\n"), containsString("\"a\": 1"))));
+            assertThat(akitaScenario.getVar("RESPONSE_JSON"), equalTo("{\"a\":1}"));
+        } finally {
+            System.clearProperty("reportLogLevel");
+            PropertyLoader.reloadProperties();
+        }
+    }
+
+    @Test
+    void failedResponseFormattedInErrorMessage() {
+        stubFor(get(urlEqualTo("/get/error"))
+                .willReturn(aResponse()
+                        .withStatus(500)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"error\":\"fail\"}")));
+        AssertionError error = assertThrows(AssertionError.class,
+                () -> api.sendHttpRequestWithoutParams("GET", "/get/error", "RESPONSE_ERROR"));
+        assertThat(error.getMessage(), containsString("\"error\": \"fail\""));
+    }
+
+    private static List<String> recordReportEntries() {
+        List<String> entries = new ArrayList<>();
+        akitaScenario.setEnvironment(new AkitaEnvironment(new StubScenario() {
+            @Override
+            public void write(String text) {
+                entries.add(text);
+            }
+        }));
+        return entries;
+    }
+}
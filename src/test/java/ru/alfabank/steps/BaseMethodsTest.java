@@ -86,8 +86,10 @@ public class BaseMethodsTest {
         String propertyName = "akita.url";
         String expectedValue = "http://url";
         System.setProperty(propertyName, expectedValue);
+        PropertyLoader.reloadProperties();
         String actualValue = bm.getPropertyOrStringVariableOrValue(propertyName);
         System.clearProperty(propertyName);
+        PropertyLoader.reloadProperties();
         assertThat(actualValue, equalTo(expectedValue));
     }
 }
\ No newline at end of file
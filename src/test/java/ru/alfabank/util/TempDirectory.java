@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 Alfa Laboratory
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ru.alfabank.util;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Временная директория, создаваемая перед каждым тестом и удаляемая со всем содержимым после него.
+ * Подключается полем с аннотацией @RegisterExtension
+ */
+public class TempDirectory implements BeforeEachCallback, AfterEachCallback {
+
+    private final String prefix;
+    private Path path;
+
+    public TempDirectory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Path resolve(String other) {
+        return path.resolve(other);
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) throws IOException {
+        path = Files.createTempDirectory(prefix);
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}